@@ -0,0 +1,85 @@
+package main;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AABBBenchmark.java
+ * 
+ * Benchmarks AABB.isOverlapping over a fixed set of random box pairs, a bit under half of them overlapping.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1)
+public class AABBBenchmark{
+	
+	private static final int PAIRS = 1024;
+	
+	private AABB[] a, b;
+	
+	
+	@Setup
+	public void setup(){
+		Random random = new Random(BenchmarkScenario.SEED);
+		
+		a = new AABB[PAIRS];
+		b = new AABB[PAIRS];
+		
+		for(int i = 0; i < PAIRS; i++){
+			a[i] = randomAABB(random);
+			b[i] = randomAABB(random);
+		}
+	}
+	
+	// Box of size 80 within a 280 unit square
+	private AABB randomAABB(Random random){
+		AABB aabb = new AABB();
+		aabb.lowerBoundX = random.nextFloat() * 200;
+		aabb.lowerBoundY = random.nextFloat() * 200;
+		aabb.upperBoundX = aabb.lowerBoundX + 80;
+		aabb.upperBoundY = aabb.lowerBoundY + 80;
+		return aabb;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PAIRS)
+	public int isOverlapping(){
+		int count = 0;
+		
+		for(int i = 0; i < PAIRS; i++)
+			if(a[i].isOverlapping(b[i]))
+				count++;
+		
+		return count;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PAIRS)
+	public int isOverlappingY(){
+		int count = 0;
+		
+		for(int i = 0; i < PAIRS; i++)
+			if(a[i].isOverlappingY(b[i]))
+				count++;
+		
+		return count;
+	}
+}
@@ -0,0 +1,26 @@
+package main;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkRunner.java
+ * 
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line options and always attaches
+ * the GC profiler so allocation rates are reported for every benchmark.
+ * 
+ * @author Daniel
+ *
+ */
+public class BenchmarkRunner{
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException{
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
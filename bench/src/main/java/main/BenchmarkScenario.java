@@ -0,0 +1,133 @@
+package main;
+
+import java.util.Random;
+
+/**
+ * BenchmarkScenario.java
+ * 
+ * Seeded collider layout shared by the JMH benchmarks. The region is sized so that the colliders
+ * cover the requested fraction of its area, and colliders move and bounce like in CollisionTest.
+ * 
+ * @author Daniel
+ *
+ */
+public class BenchmarkScenario{
+	
+	// Collider properties, matching CollisionTest
+	public static final float COLLIDER_SIZE = 80;
+	public static final float COLLIDER_VEL_MIN = 2;
+	
+	public static final long SEED = 1;
+	
+	public final ColliderStore colliders;
+	
+	public final float regionSize;
+	
+	
+	// density is the fraction of the region area covered by colliders
+	// Speeds are uniform in [COLLIDER_VEL_MIN, COLLIDER_VEL_MIN + velocitySpread]
+	public BenchmarkScenario(int colliderCount, float density, float velocitySpread){
+		
+		Random random = new Random(SEED);
+		
+		regionSize = (float)Math.sqrt(colliderCount * COLLIDER_SIZE * COLLIDER_SIZE / density);
+		colliders = new ColliderStore(colliderCount);
+		
+		for(int i = 0; i < colliderCount; i++){
+			
+			float x = (random.nextFloat() * (regionSize - COLLIDER_SIZE * 2)) - regionSize / 2f + COLLIDER_SIZE;
+			float y = (random.nextFloat() * (regionSize - COLLIDER_SIZE * 2)) - regionSize / 2f + COLLIDER_SIZE;
+			
+			float vel = random.nextFloat() * velocitySpread + COLLIDER_VEL_MIN;
+			float dir = random.nextFloat() * 2 * (float)Math.PI;
+			
+			colliders.add(x, y, COLLIDER_SIZE, vel * (float)Math.cos(dir), vel * (float)Math.sin(dir));
+		}
+	}
+	
+	// Move all colliders one frame and bounce them off the region boundary
+	public void step(){
+		colliders.update();
+		
+		for(int i = 0; i < colliders.size(); i++){
+			if(colliders.lowerBoundX[i] < -regionSize / 2f || colliders.upperBoundX[i] > regionSize / 2f)
+				colliders.velX[i] = -colliders.velX[i];
+			
+			if(colliders.lowerBoundY[i] < -regionSize / 2f || colliders.upperBoundY[i] > regionSize / 2f)
+				colliders.velY[i] = -colliders.velY[i];
+		}
+	}
+	
+	// Create a collision checker by name, adding the colliders to it if it keeps its own structure
+	public CollisionChecker createChecker(String algorithm){
+		switch(algorithm){
+		case "BruteForce":
+			return new CCBruteForce(colliders);
+		
+		case "BruteForceParallel":
+			CCBruteForce bruteForce = new CCBruteForce(colliders);
+			bruteForce.setMode(CCBruteForce.MODE_PARALLEL);
+			return bruteForce;
+		
+		case "SweepAndPrune":
+			return new CCSweepAndPrune(colliders);
+		
+		case "SweepAndPruneIncremental":
+			CCSweepAndPrune sap = new CCSweepAndPrune(colliders);
+			sap.setMode(CCSweepAndPrune.MODE_INCREMENTAL);
+			return sap;
+		
+		case "SweepAndPruneTwoAxis":
+			CCSweepAndPrune twoAxis = new CCSweepAndPrune(colliders);
+			twoAxis.setMode(CCSweepAndPrune.MODE_TWO_AXIS);
+			return twoAxis;
+		
+		case "BoundingVolumeHierarchy":
+			return createBoundingVolumeHierarchy(CCBoundingVolumeHierarchy.MODE_SERIAL);
+		
+		case "BoundingVolumeHierarchyParallel":
+			return createBoundingVolumeHierarchy(CCBoundingVolumeHierarchy.MODE_PARALLEL);
+		
+		case "BoundingVolumeHierarchyIncremental":
+			return createBoundingVolumeHierarchy(CCBoundingVolumeHierarchy.MODE_INCREMENTAL);
+			
+		case "SpatialHash":
+			return new CCSpatialHash(colliders, COLLIDER_SIZE);
+		
+		case "LinearBoundingVolumeHierarchy":
+			return new CCLinearBoundingVolumeHierarchy(colliders);
+		
+		case "LinearBoundingVolumeHierarchyParallel":
+			CCLinearBoundingVolumeHierarchy linearBvh = new CCLinearBoundingVolumeHierarchy(colliders);
+			linearBvh.setMode(CCLinearBoundingVolumeHierarchy.MODE_PARALLEL);
+			return linearBvh;
+		
+		case "LooseQuadtree":
+			return new CCLooseQuadtree(colliders, regionSize, regionSize);
+		
+		case "HierarchicalGrid":
+			return new CCHierarchicalGrid(colliders, COLLIDER_SIZE);
+		
+		case "CellList":
+			return new CCCellList(colliders, COLLIDER_SIZE);
+		
+		case "CellListParallel":
+			CCCellList cellList = new CCCellList(colliders, COLLIDER_SIZE);
+			cellList.setMode(CCCellList.MODE_PARALLEL);
+			return cellList;
+		
+		case "ContinuousSweepAndPrune":
+			return new CCContinuous(colliders, CCSweepAndPrune::new);
+		}
+		
+		throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+	}
+	
+	private CCBoundingVolumeHierarchy createBoundingVolumeHierarchy(int mode){
+		CCBoundingVolumeHierarchy bvh = new CCBoundingVolumeHierarchy(colliders);
+		bvh.setMode(mode);
+		bvh.addAll(0, colliders.size());
+		bvh.update();
+		return bvh;
+	}
+}
@@ -0,0 +1,149 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BoundingVolumeHierarchyBenchmark.java
+ * 
+ * Benchmarks the tree maintenance operations of CCBoundingVolumeHierarchy: building a tree with add() or addAll(),
+ * removing and re-adding a single collider, and the per-frame update() after colliders have moved.
+ * Also benchmarks single spatial queries centered on colliders in turn.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class BoundingVolumeHierarchyBenchmark{
+	
+	@Param({"1000", "10000", "100000"})
+	public int colliderCount;
+	
+	@Param({"0.01"})
+	public float density;
+	
+	@Param({"1"})
+	public float velocitySpread;
+	
+	private BenchmarkScenario scenario;
+	private CCBoundingVolumeHierarchy bvh;
+	
+	// Next collider to remove and re-add
+	private int next;
+	
+	// Next collider to center a query on
+	private int nextQuery;
+	
+	private IdBuffer ids;
+	
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		scenario = new BenchmarkScenario(colliderCount, density, velocitySpread);
+		bvh = (CCBoundingVolumeHierarchy)scenario.createChecker("BoundingVolumeHierarchy");
+		ids = new IdBuffer();
+	}
+	
+	// Build a whole tree from scratch through add()
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 10)
+	public CCBoundingVolumeHierarchy add(){
+		CCBoundingVolumeHierarchy tree = new CCBoundingVolumeHierarchy(scenario.colliders);
+		
+		for(int i = 0; i < colliderCount; i++)
+			tree.add(scenario.colliders.get(i));
+		
+		return tree;
+	}
+	
+	// Build a whole tree from scratch with the binned SAH bulk build
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3)
+	@Measurement(iterations = 10)
+	public CCBoundingVolumeHierarchy addAll(){
+		CCBoundingVolumeHierarchy tree = new CCBoundingVolumeHierarchy(scenario.colliders);
+		tree.addAll(0, colliderCount);
+		return tree;
+	}
+	
+	// Remove one collider and add it back, keeping the tree size constant
+	// The tree follows the store moving its last collider into the removed id, so the store is updated too
+	@Benchmark
+	public CCBoundingVolumeHierarchy removeAdd(){
+		ColliderStore colliders = scenario.colliders;
+		Collider c = colliders.get(next);
+		next = (next + 1) % colliderCount;
+		
+		float x = c.getX(), y = c.getY(), size = c.getSize(), velX = c.getVelX(), velY = c.getVelY();
+		
+		bvh.remove(c);
+		colliders.remove(c);
+		bvh.add(colliders.add(x, y, size, velX, velY));
+		
+		return bvh;
+	}
+	
+	// Colliders inside a 1920x1080 view
+	@Benchmark
+	public IdBuffer queryRegion(){
+		Collider c = nextQueryCollider();
+		
+		ids.clear();
+		bvh.queryRegion(c.getX() - 960, c.getY() - 540, c.getX() + 960, c.getY() + 540, ids);
+		return ids;
+	}
+	
+	// Ray along a diagonal from just outside a collider, so it is not hit at the origin
+	@Benchmark
+	public int raycast(){
+		Collider c = nextQueryCollider();
+		float offset = c.getSize();
+		return bvh.raycast(c.getX() + 0.6f * offset, c.getY() + 0.8f * offset, 0.6f, 0.8f, scenario.regionSize);
+	}
+	
+	@Benchmark
+	public IdBuffer queryNearest(){
+		Collider c = nextQueryCollider();
+		
+		ids.clear();
+		bvh.queryNearest(c.getX(), c.getY(), 8, ids);
+		return ids;
+	}
+	
+	private Collider nextQueryCollider(){
+		Collider c = scenario.colliders.get(nextQuery);
+		nextQuery = (nextQuery + 1) % colliderCount;
+		return c;
+	}
+	
+	// Refit and reinsert leaves after one frame of movement
+	// Includes the step itself, which ScenarioStepBenchmark measures on its own
+	@Benchmark
+	public CCBoundingVolumeHierarchy update(){
+		scenario.step();
+		bvh.update();
+		return bvh;
+	}
+}
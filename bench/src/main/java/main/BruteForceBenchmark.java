@@ -0,0 +1,80 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BruteForceBenchmark.java
+ * 
+ * Same frame as CheckCollisionsBenchmark for the brute force checkers. Brute force is O(n^2), so
+ * collider counts stop at 100000, larger counts would take hours per iteration.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class BruteForceBenchmark{
+	
+	@Param({"BruteForce", "BruteForceParallel"})
+	public String algorithm;
+	
+	@Param({"1000", "10000", "100000"})
+	public int colliderCount;
+	
+	// Fraction of region area covered by colliders
+	@Param({"0.01", "0.1"})
+	public float density;
+	
+	// Width of the random speed range
+	@Param({"1", "10"})
+	public float velocitySpread;
+	
+	private BenchmarkScenario scenario;
+	private CollisionChecker checker;
+	
+	private PairBuffer pairs;
+	
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		scenario = new BenchmarkScenario(colliderCount, density, velocitySpread);
+		checker = scenario.createChecker(algorithm);
+		pairs = new PairBuffer();
+	}
+	
+	// Allocation-free pair buffer output
+	@Benchmark
+	public PairBuffer checkCollisions(){
+		scenario.step();
+		
+		pairs.clear();
+		checker.checkCollisions(pairs);
+		return pairs;
+	}
+	
+	// Collision object output, for comparing allocation rates
+	@Benchmark
+	public ArrayList<Collision> checkCollisionsList(){
+		scenario.step();
+		
+		return checker.checkCollisions();
+	}
+}
@@ -0,0 +1,93 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CheckCollisionsBenchmark.java
+ * 
+ * Benchmarks one frame of CollisionChecker.checkCollisions() for every implementation, through both
+ * the PairBuffer output and the Collision list output. Brute force is in BruteForceBenchmark, which
+ * stops at fewer colliders.
+ * Each invocation moves the colliders one frame first so incremental structures see realistic motion.
+ * ScenarioStepBenchmark measures that step on its own, to subtract from these timings.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class CheckCollisionsBenchmark{
+	
+	@Param({"SweepAndPrune", "SweepAndPruneIncremental", "SweepAndPruneTwoAxis", "BoundingVolumeHierarchy", "BoundingVolumeHierarchyParallel", "BoundingVolumeHierarchyIncremental", "SpatialHash",
+		"LinearBoundingVolumeHierarchy", "LinearBoundingVolumeHierarchyParallel", "LooseQuadtree", "HierarchicalGrid", "CellList", "CellListParallel", "ContinuousSweepAndPrune"})
+	public String algorithm;
+	
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int colliderCount;
+	
+	// Fraction of region area covered by colliders
+	@Param({"0.01", "0.1"})
+	public float density;
+	
+	// Width of the random speed range
+	@Param({"1", "10"})
+	public float velocitySpread;
+	
+	private BenchmarkScenario scenario;
+	private CollisionChecker checker;
+	private CCBoundingVolumeHierarchy bvh;
+	
+	private PairBuffer pairs;
+	
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		scenario = new BenchmarkScenario(colliderCount, density, velocitySpread);
+		checker = scenario.createChecker(algorithm);
+		bvh = checker instanceof CCBoundingVolumeHierarchy ? (CCBoundingVolumeHierarchy)checker : null;
+		pairs = new PairBuffer();
+	}
+	
+	// Allocation-free pair buffer output
+	@Benchmark
+	public PairBuffer checkCollisions(){
+		scenario.step();
+		
+		// Tree maintenance is part of the BVH broadphase cost
+		if(bvh != null)
+			bvh.update();
+		
+		pairs.clear();
+		checker.checkCollisions(pairs);
+		return pairs;
+	}
+	
+	// Collision object output, for comparing allocation rates
+	@Benchmark
+	public ArrayList<Collision> checkCollisionsList(){
+		scenario.step();
+		
+		if(bvh != null)
+			bvh.update();
+		
+		return checker.checkCollisions();
+	}
+}
@@ -0,0 +1,119 @@
+package main;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * InsertionSortBenchmark.java
+ * 
+ * Benchmarks the sweep and prune interval sort on nearly-sorted input (one frame of movement
+ * after a sort) and on shuffled input. Each invocation first restores the unsorted input, and
+ * copy() measures that on its own.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class InsertionSortBenchmark{
+	
+	@Param({"1000", "10000", "100000"})
+	public int colliderCount;
+	
+	@Param({"nearlySorted", "shuffled"})
+	public String order;
+	
+	// Unsorted template, copied at the start of every invocation
+	private float[] templateKeys;
+	private int[] templateValues;
+	
+	private float[] keys;
+	private int[] values;
+	
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		BenchmarkScenario scenario = new BenchmarkScenario(colliderCount, 0.01f, 1);
+		
+		int count = colliderCount * 2;
+		templateKeys = new float[count];
+		templateValues = new int[count];
+		
+		// Start and end interval of each collider, encoded like CCSweepAndPrune
+		for(int i = 0; i < colliderCount; i++){
+			templateValues[i * 2] = (i << 1) | 1;
+			templateValues[i * 2 + 1] = i << 1;
+		}
+		
+		updateKeys(scenario);
+		
+		if(order.equals("nearlySorted")){
+			
+			// Sort, then move one frame so only neighbouring intervals are out of order
+			CCSweepAndPrune.InsertionSort(templateKeys, templateValues, count);
+			scenario.step();
+			updateKeys(scenario);
+		}
+		else{
+			Random random = new Random(BenchmarkScenario.SEED);
+			
+			for(int i = count - 1; i > 0; i--){
+				int j = random.nextInt(i + 1);
+				
+				float key = templateKeys[i];
+				templateKeys[i] = templateKeys[j];
+				templateKeys[j] = key;
+				
+				int value = templateValues[i];
+				templateValues[i] = templateValues[j];
+				templateValues[j] = value;
+			}
+		}
+		
+		keys = new float[count];
+		values = new int[count];
+	}
+	
+	private void updateKeys(BenchmarkScenario scenario){
+		for(int i = 0; i < templateValues.length; i++){
+			int id = templateValues[i] >> 1;
+			templateKeys[i] = (templateValues[i] & 1) != 0 ? scenario.colliders.lowerBoundX[id] : scenario.colliders.upperBoundX[id];
+		}
+	}
+	
+	private void reset(){
+		System.arraycopy(templateKeys, 0, keys, 0, keys.length);
+		System.arraycopy(templateValues, 0, values, 0, values.length);
+	}
+	
+	@Benchmark
+	public float[] insertionSort(){
+		reset();
+		CCSweepAndPrune.InsertionSort(keys, values, keys.length);
+		return keys;
+	}
+	
+	// Restoring the input alone, to subtract from insertionSort()
+	@Benchmark
+	public float[] copy(){
+		reset();
+		return keys;
+	}
+}
@@ -0,0 +1,59 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ScenarioStepBenchmark.java
+ * 
+ * Baseline for the benchmarks that move the colliders one frame inside each invocation: measures
+ * BenchmarkScenario.step() alone, over the same scenarios as CheckCollisionsBenchmark.
+ * 
+ * @author Daniel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ScenarioStepBenchmark{
+	
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int colliderCount;
+	
+	// Fraction of region area covered by colliders
+	@Param({"0.01", "0.1"})
+	public float density;
+	
+	// Width of the random speed range
+	@Param({"1", "10"})
+	public float velocitySpread;
+	
+	private BenchmarkScenario scenario;
+	
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		scenario = new BenchmarkScenario(colliderCount, density, velocitySpread);
+	}
+	
+	@Benchmark
+	public ColliderStore step(){
+		scenario.step();
+		return scenario.colliders;
+	}
+}
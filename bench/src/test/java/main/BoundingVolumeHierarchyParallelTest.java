@@ -0,0 +1,98 @@
+package main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * BoundingVolumeHierarchyParallelTest.java
+ * 
+ * Checks that the parallel mode of CCBoundingVolumeHierarchy outputs exactly the pairs of the serial mode, in the
+ * same order, so switching modes does not change how collisions are resolved.
+ * 
+ * @author Daniel
+ *
+ */
+public class BoundingVolumeHierarchyParallelTest{
+	
+	private static final long SEED = 1;
+	private static final int FRAMES = 20;
+	
+	// Own pool, so the tasks are split the same way whatever the core count
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+	
+	
+	@AfterClass
+	public static void shutdownPool(){
+		POOL.shutdown();
+	}
+	
+	// Colliders of the given sizes spread over a square region, moving a few units per frame
+	private static ColliderStore createColliders(int count, float regionSize, float minSize, float maxSize){
+		
+		Random random = new Random(SEED);
+		ColliderStore colliders = new ColliderStore(count);
+		
+		for(int i = 0; i < count; i++){
+			float size = minSize * (float)Math.pow(maxSize / minSize, random.nextFloat());
+			float x = (random.nextFloat() - 0.5f) * regionSize;
+			float y = (random.nextFloat() - 0.5f) * regionSize;
+			float dir = random.nextFloat() * 2 * (float)Math.PI;
+			
+			colliders.add(x, y, size, 3 * (float)Math.cos(dir), 3 * (float)Math.sin(dir));
+		}
+		
+		return colliders;
+	}
+	
+	// Run both modes on the same tree for a few frames and compare their output pair by pair
+	private static void checkSameOutput(ColliderStore colliders){
+		
+		CCBoundingVolumeHierarchy bvh = new CCBoundingVolumeHierarchy(colliders, new ParallelPairKernel(POOL));
+		bvh.addAll(0, colliders.size());
+		
+		PairBuffer serial = new PairBuffer();
+		PairBuffer parallel = new PairBuffer();
+		
+		for(int frame = 0; frame < FRAMES; frame++){
+			colliders.update();
+			bvh.update();
+			
+			serial.clear();
+			bvh.setMode(CCBoundingVolumeHierarchy.MODE_SERIAL);
+			bvh.checkCollisions(serial);
+			
+			parallel.clear();
+			bvh.setMode(CCBoundingVolumeHierarchy.MODE_PARALLEL);
+			bvh.checkCollisions(parallel);
+			
+			assertTrue(serial.size() > 0);
+			assertEquals("pairs in frame " + frame, serial.size(), parallel.size());
+			
+			for(int i = 0; i < serial.size(); i++){
+				assertEquals("first collider of pair " + i + " in frame " + frame, serial.getA(i), parallel.getA(i));
+				assertEquals("second collider of pair " + i + " in frame " + frame, serial.getB(i), parallel.getB(i));
+			}
+		}
+	}
+	
+	@Test
+	public void uniformSizesMatchSerialOrder(){
+		checkSameOutput(createColliders(20000, 40000, 80, 80));
+	}
+	
+	@Test
+	public void mixedSizesMatchSerialOrder(){
+		checkSameOutput(createColliders(20000, 100000, 10, 2000));
+	}
+	
+	@Test
+	public void denseClusterMatchesSerialOrder(){
+		checkSameOutput(createColliders(5000, 3000, 80, 80));
+	}
+}
@@ -0,0 +1,63 @@
+package main;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * BoundingVolumeHierarchyRaycastTest.java
+ * 
+ * Tests CCBoundingVolumeHierarchy.raycast() against rays with no distance limit.
+ * 
+ * @author Daniel
+ *
+ */
+public class BoundingVolumeHierarchyRaycastTest{
+	
+	private static final float COLLIDER_SIZE = 80;
+	
+	
+	// Colliders in a row along y = 1000, spaced apart so the tree has several levels
+	private static CCBoundingVolumeHierarchy createRow(ColliderStore colliders, int count){
+		
+		for(int i = 0; i < count; i++)
+			colliders.add(i * COLLIDER_SIZE * 2, 1000, COLLIDER_SIZE, 0, 0);
+		
+		CCBoundingVolumeHierarchy bvh = new CCBoundingVolumeHierarchy(colliders);
+		bvh.addAll(0, count);
+		return bvh;
+	}
+	
+	@Test
+	public void unboundedRayMissingEverythingHitsNothing(){
+		ColliderStore colliders = new ColliderStore(16);
+		CCBoundingVolumeHierarchy bvh = createRow(colliders, 16);
+		
+		assertEquals(-1, bvh.raycast(0, 0, 1, 0, Float.POSITIVE_INFINITY));
+		assertEquals(Float.POSITIVE_INFINITY, bvh.getRayDistance(), 0);
+		
+		assertEquals(-1, bvh.raycast(0, 0, 0.6f, -0.8f, Float.POSITIVE_INFINITY));
+	}
+	
+	@Test
+	public void unboundedRayMissingSingleColliderHitsNothing(){
+		ColliderStore colliders = new ColliderStore(1);
+		CCBoundingVolumeHierarchy bvh = createRow(colliders, 1);
+		
+		assertEquals(-1, bvh.raycast(0, 0, 1, 0, Float.POSITIVE_INFINITY));
+	}
+	
+	@Test
+	public void unboundedRayHitsNearestCollider(){
+		ColliderStore colliders = new ColliderStore(16);
+		CCBoundingVolumeHierarchy bvh = createRow(colliders, 16);
+		
+		// Straight up into the fourth collider, whose lower edge is at y = 960
+		assertEquals(3, bvh.raycast(3 * COLLIDER_SIZE * 2, 0, 0, 1, Float.POSITIVE_INFINITY));
+		assertEquals(1000 - COLLIDER_SIZE / 2, bvh.getRayDistance(), 1e-3f);
+		
+		// Along the row from the left, into the first collider
+		assertEquals(0, bvh.raycast(-1000, 1000, 1, 0, Float.POSITIVE_INFINITY));
+		assertEquals(1000 - COLLIDER_SIZE / 2, bvh.getRayDistance(), 1e-3f);
+	}
+}
@@ -0,0 +1,208 @@
+package main;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * CollisionCheckerTest.java
+ * 
+ * Compares the pairs found by each collision checker with CCBruteForce on seeded scenes: uniform sizes, mixed sizes
+ * from 10 to 2000, colliders spread far outside the region, and degenerate layouts of stacked and exactly touching
+ * colliders. Pairs are compared as sorted sets of pair keys, so the order and direction of each pair do not matter.
+ * Checkers with a parallel mode must also output exactly the pairs of their serial mode, in the same order.
+ * 
+ * @author Daniel
+ *
+ */
+public class CollisionCheckerTest{
+	
+	private static final long SEED = 1;
+	private static final int COLLIDER_COUNT = 5000;
+	private static final float REGION_SIZE = 20000;
+	private static final int FRAMES = 10;
+	
+	// Own pool, so the parallel modes split their work the same way whatever the core count
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+	
+	
+	@AfterClass
+	public static void shutdownPool(){
+		POOL.shutdown();
+	}
+	
+	// Colliders with log-uniform sizes, spread over a square of the given size around the origin
+	private static ColliderStore createScene(float minSize, float maxSize, float spread){
+		
+		Random random = new Random(SEED);
+		ColliderStore colliders = new ColliderStore(COLLIDER_COUNT);
+		
+		for(int i = 0; i < COLLIDER_COUNT; i++){
+			float size = minSize * (float)Math.pow(maxSize / minSize, random.nextFloat());
+			float x = (random.nextFloat() - 0.5f) * spread;
+			float y = (random.nextFloat() - 0.5f) * spread;
+			
+			float vel = 2 + random.nextFloat() * 20;
+			float dir = random.nextFloat() * 2 * (float)Math.PI;
+			
+			colliders.add(x, y, size, vel * (float)Math.cos(dir), vel * (float)Math.sin(dir));
+		}
+		
+		return colliders;
+	}
+	
+	// Still colliders sharing a single center
+	private static ColliderStore createStack(){
+		ColliderStore colliders = new ColliderStore();
+		
+		for(int i = 0; i < 500; i++)
+			colliders.add(100, 100, 80, 0, 0);
+		
+		return colliders;
+	}
+	
+	// Still colliders in a grid whose edges exactly touch their neighbors
+	private static ColliderStore createLattice(){
+		ColliderStore colliders = new ColliderStore();
+		
+		for(int y = 0; y < 60; y++)
+			for(int x = 0; x < 60; x++)
+				colliders.add(x * 80 - 2400, y * 80 - 2400, 80, 0, 0);
+		
+		return colliders;
+	}
+	
+	private static ColliderStore[] createScenes(){
+		return new ColliderStore[]{
+			createScene(80, 80, REGION_SIZE),
+			createScene(10, 2000, REGION_SIZE),
+			createScene(10, 2000, REGION_SIZE * 3),
+			createStack(),
+			createLattice()
+		};
+	}
+	
+	private static final String[] SCENE_NAMES = {"uniform", "mixed", "outside region", "stack", "lattice"};
+	
+	
+	private static PairBuffer findPairs(CollisionChecker checker){
+		PairBuffer pairs = new PairBuffer();
+		checker.checkCollisions(pairs);
+		return pairs;
+	}
+	
+	// Sorted keys of the pairs, failing on pairs of a collider with itself or pairs reported twice
+	private static long[] normalize(PairBuffer pairs, String message){
+		
+		long[] keys = new long[pairs.size()];
+		
+		for(int i = 0; i < keys.length; i++){
+			assertNotEquals(message + ": collider paired with itself", pairs.getA(i), pairs.getB(i));
+			keys[i] = PairSet.key(pairs.getA(i), pairs.getB(i));
+		}
+		
+		Arrays.sort(keys);
+		
+		for(int i = 1; i < keys.length; i++)
+			assertNotEquals(message + ": pair reported twice", keys[i - 1], keys[i]);
+		
+		return keys;
+	}
+	
+	// Compare every mode of a checker with brute force on every scene, over a few frames of movement
+	private static void checkAgainstBruteForce(Function<ColliderStore, CollisionChecker> factory){
+		
+		ColliderStore[] scenes = createScenes();
+		
+		for(int scene = 0; scene < scenes.length; scene++){
+			ColliderStore colliders = scenes[scene];
+			CollisionChecker checker = factory.apply(colliders);
+			CCBruteForce bruteForce = new CCBruteForce(colliders);
+			
+			for(int frame = 0; frame < FRAMES; frame++){
+				colliders.update();
+				
+				long[] expected = normalize(findPairs(bruteForce), "brute force");
+				
+				for(int mode = 0; mode < checker.getModeCount(); mode++){
+					checker.setMode(mode);
+					String message = SCENE_NAMES[scene] + " scene, frame " + frame;
+					
+					if(checker.getModeName() != null)
+						message += ", " + checker.getModeName() + " mode";
+					
+					assertArrayEquals(message, expected, normalize(findPairs(checker), message));
+				}
+			}
+		}
+	}
+	
+	// Compare the parallel mode of a checker with its serial mode pair by pair, on every scene
+	private static void checkParallelMatchesSerial(Function<ColliderStore, CollisionChecker> factory, int serialMode, int parallelMode){
+		
+		ColliderStore[] scenes = createScenes();
+		
+		for(int scene = 0; scene < scenes.length; scene++){
+			ColliderStore colliders = scenes[scene];
+			CollisionChecker checker = factory.apply(colliders);
+			
+			for(int frame = 0; frame < FRAMES; frame++){
+				colliders.update();
+				
+				checker.setMode(serialMode);
+				PairBuffer serial = findPairs(checker);
+				
+				checker.setMode(parallelMode);
+				PairBuffer parallel = findPairs(checker);
+				
+				String message = SCENE_NAMES[scene] + " scene, frame " + frame;
+				assertEquals(message + ": pairs", serial.size(), parallel.size());
+				
+				for(int i = 0; i < serial.size(); i++){
+					assertEquals(message + ": first collider of pair " + i, serial.getA(i), parallel.getA(i));
+					assertEquals(message + ": second collider of pair " + i, serial.getB(i), parallel.getB(i));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void linearBoundingVolumeHierarchyMatchesBruteForce(){
+		checkAgainstBruteForce(colliders -> new CCLinearBoundingVolumeHierarchy(colliders, POOL));
+	}
+	
+	@Test
+	public void linearBoundingVolumeHierarchyParallelMatchesSerial(){
+		checkParallelMatchesSerial(colliders -> new CCLinearBoundingVolumeHierarchy(colliders, POOL),
+				CCLinearBoundingVolumeHierarchy.MODE_SERIAL, CCLinearBoundingVolumeHierarchy.MODE_PARALLEL);
+	}
+	
+	@Test
+	public void looseQuadtreeMatchesBruteForce(){
+		checkAgainstBruteForce(colliders -> new CCLooseQuadtree(colliders, REGION_SIZE, REGION_SIZE));
+	}
+	
+	@Test
+	public void hierarchicalGridMatchesBruteForce(){
+		checkAgainstBruteForce(colliders -> new CCHierarchicalGrid(colliders, 10));
+	}
+	
+	@Test
+	public void cellListMatchesBruteForce(){
+		checkAgainstBruteForce(colliders -> new CCCellList(colliders, 80, POOL));
+	}
+	
+	@Test
+	public void cellListParallelMatchesSerial(){
+		checkParallelMatchesSerial(colliders -> new CCCellList(colliders, 80, POOL),
+				CCCellList.MODE_SERIAL, CCCellList.MODE_PARALLEL);
+	}
+}
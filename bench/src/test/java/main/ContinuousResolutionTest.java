@@ -0,0 +1,74 @@
+package main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * ContinuousResolutionTest.java
+ * 
+ * Runs CollisionTest headless with "Continuous Sweep and Prune" selected and checks that colliders which overlap
+ * are pushed apart, rather than rewound to where they already overlapped every frame.
+ * 
+ * @author Daniel
+ *
+ */
+public class ContinuousResolutionTest{
+	
+	private static final long SEED = 42;
+	private static final int COLLIDER_COUNT = 5000;
+	private static final int REGION_SIZE = 10000;
+	private static final int FRAMES = 300;
+	
+	
+	// Index of an algorithm in CollisionTest by name
+	private static int findAlgorithm(CollisionTest test, String name){
+		
+		for(int i = 0; i < test.getAlgorithmCount(); i++)
+			if(test.getAlgorithmName(i).equals(name))
+				return i;
+		
+		throw new IllegalArgumentException("No algorithm named " + name);
+	}
+	
+	@Test
+	public void overlappingCollidersMoveApart(){
+		CollisionTest test = new CollisionTest();
+		test.init(SEED, REGION_SIZE, REGION_SIZE, COLLIDER_COUNT);
+		test.setAlgorithm(findAlgorithm(test, "Continuous Sweep and Prune"));
+		
+		ColliderStore colliders = test.getColliders();
+		float[] startX = colliders.x.clone();
+		float[] startY = colliders.y.clone();
+		
+		// Pairs overlapping after the first frame
+		test.step();
+		
+		PairBuffer overlapping = new PairBuffer();
+		new CCBruteForce(colliders).checkCollisions(overlapping);
+		assertTrue(overlapping.size() > 0);
+		
+		for(int i = 0; i < FRAMES; i++)
+			test.step();
+		
+		// Nearly all of them have separated
+		int stillOverlapping = 0;
+		
+		for(int i = 0; i < overlapping.size(); i++)
+			if(colliders.isOverlapping(overlapping.getA(i), overlapping.getB(i)))
+				stillOverlapping++;
+		
+		assertTrue(stillOverlapping + " of " + overlapping.size() + " pairs still overlap",
+				stillOverlapping < overlapping.size() / 10);
+		
+		// And no collider was held in place
+		int unmoved = 0;
+		
+		for(int i = 0; i < COLLIDER_COUNT; i++)
+			if(colliders.x[i] == startX[i] && colliders.y[i] == startY[i])
+				unmoved++;
+		
+		assertEquals(0, unmoved);
+	}
+}
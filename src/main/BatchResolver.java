@@ -0,0 +1,155 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchResolver.java
+ *
+ * Resolves collider pairs in parallel by splitting them into batches where no collider appears twice, so the pairs
+ * of a batch can run on different threads while each changes both of its colliders.
+ *
+ * Batches come from a greedy coloring in pair order: each pair goes in the batch after the last one holding either
+ * of its colliders. Batches run one after another, so every collider sees its pairs in the same order as a serial
+ * loop over the pairs, and the result is the same as the serial one on every run.
+ *
+ * @author Daniel
+ *
+ */
+public class BatchResolver{
+	
+	// Pairs per task within a batch, smaller batches run on the calling thread
+	private static final int MIN_CHUNK_PAIRS = 256;
+	
+	// Work done for a single pair, given by its index in the pair buffer
+	public interface Job{
+		void resolve(int pair);
+	}
+	
+	private final ForkJoinPool pool;
+	
+	// Last batch holding each collider, -1 if none
+	private int[] colliderBatch;
+	
+	// Batch of each pair, then the pairs sorted by batch and the first sorted index of each batch
+	private int[] pairBatch;
+	private int[] order;
+	private int[] batchStart;
+	private int batchCount;
+	
+	
+	public BatchResolver(){
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public BatchResolver(ForkJoinPool pool){
+		this.pool = pool;
+		
+		colliderBatch = new int[0];
+		pairBatch = new int[0];
+		order = new int[0];
+		batchStart = new int[1];
+	}
+	
+	// Run a job for every pair, with ids below colliderCount
+	public void run(PairBuffer pairs, int colliderCount, Job job){
+		
+		createBatches(pairs, colliderCount);
+		
+		for(int batch = 0; batch < batchCount; batch++){
+			int start = batchStart[batch];
+			int end = batchStart[batch + 1];
+			
+			if(end - start < MIN_CHUNK_PAIRS * 2 || pool.getParallelism() == 1){
+				for(int i = start; i < end; i++)
+					job.resolve(order[i]);
+			}
+			else
+				pool.invoke(new BatchTask(job, start, end));
+		}
+	}
+	
+	// Color the pairs and counting sort them by batch, keeping pair order within a batch
+	private void createBatches(PairBuffer pairs, int colliderCount){
+		
+		int count = pairs.size();
+		
+		if(colliderBatch.length < colliderCount)
+			colliderBatch = new int[Math.max(colliderCount, colliderBatch.length * 2)];
+		
+		if(pairBatch.length < count){
+			pairBatch = new int[Math.max(count, pairBatch.length * 2)];
+			order = new int[pairBatch.length];
+		}
+		
+		for(int i = 0; i < colliderCount; i++)
+			colliderBatch[i] = -1;
+		
+		batchCount = 0;
+		
+		for(int i = 0; i < count; i++){
+			int a = pairs.getA(i);
+			int b = pairs.getB(i);
+			int batch = Math.max(colliderBatch[a], colliderBatch[b]) + 1;
+			
+			pairBatch[i] = batch;
+			colliderBatch[a] = batch;
+			colliderBatch[b] = batch;
+			batchCount = Math.max(batchCount, batch + 1);
+		}
+		
+		if(batchStart.length < batchCount + 1)
+			batchStart = new int[Math.max(batchCount + 1, batchStart.length * 2)];
+		
+		// Count pairs per batch, then turn the counts into start indices
+		for(int i = 0; i <= batchCount; i++)
+			batchStart[i] = 0;
+		
+		for(int i = 0; i < count; i++)
+			batchStart[pairBatch[i] + 1]++;
+		
+		for(int i = 0; i < batchCount; i++)
+			batchStart[i + 1] += batchStart[i];
+		
+		// Scatter, moving each batch's start forward as it fills, then restore the starts
+		for(int i = 0; i < count; i++)
+			order[batchStart[pairBatch[i]]++] = i;
+		
+		for(int i = batchCount; i > 0; i--)
+			batchStart[i] = batchStart[i - 1];
+		
+		batchStart[0] = 0;
+	}
+	
+	// Number of batches in the last run
+	public int getBatchCount(){
+		return batchCount;
+	}
+	
+	// Splits a range of a batch in half until it is small enough
+	private class BatchTask extends RecursiveAction{
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final Job job;
+		private final int start, end;
+		
+		BatchTask(Job job, int start, int end){
+			this.job = job;
+			this.start = start;
+			this.end = end;
+		}
+		
+		protected void compute(){
+			
+			if(end - start > MIN_CHUNK_PAIRS){
+				int mid = (start + end) >>> 1;
+				invokeAll(new BatchTask(job, start, mid), new BatchTask(job, mid, end));
+				return;
+			}
+			
+			for(int i = start; i < end; i++)
+				job.resolve(order[i]);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Benchmark.java
+ *
+ * Headless entry point that runs the collision test without a Window or Panel and reports
+ * broadphase timings for each collision checker as one JSON object per line.
+ *
+ * Arguments are given as key=value pairs, e.g.
+ * java main.Benchmark colliders=10000 region=100000 frames=600 warmup=60 seed=1 algs=0,1,2 mode=0 mixed=false parallelResolve=false
+ * 
+ * mode selects an algorithm variant, algorithms without that variant are skipped.
+ * mixed spawns colliders of mixed sizes instead of a single size.
+ * parallelResolve resolves collisions in parallel batches, its time is reported separately from the broadphase.
+ *
+ * @author Daniel
+ *
+ */
+public class Benchmark{
+	
+	// Default scenario
+	private static final int DEFAULT_COLLIDERS = 10000;
+	private static final int DEFAULT_REGION_SIZE = 100000;
+	private static final int DEFAULT_FRAMES = 600;
+	private static final int DEFAULT_WARMUP = 60;
+	private static final long DEFAULT_SEED = 1;
+	
+	public static void main(String[] args){
+		
+		int colliders	= DEFAULT_COLLIDERS;
+		int regionSize	= DEFAULT_REGION_SIZE;
+		int frames		= DEFAULT_FRAMES;
+		int warmup		= DEFAULT_WARMUP;
+		long seed		= DEFAULT_SEED;
+		int mode		= 0;
+		boolean mixed	= false;
+		boolean parallelResolve = false;
+		int[] algs		= null;
+		
+		// Parse arguments
+		for(String arg : args){
+			int split = arg.indexOf('=');
+			
+			if(split < 0)
+				throw new IllegalArgumentException("Expected key=value argument: " + arg);
+			
+			String key = arg.substring(0, split);
+			String value = arg.substring(split + 1);
+			
+			switch(key){
+			case "colliders":	colliders = Integer.parseInt(value);	break;
+			case "region":		regionSize = Integer.parseInt(value);	break;
+			case "frames":		frames = Integer.parseInt(value);		break;
+			case "warmup":		warmup = Integer.parseInt(value);		break;
+			case "seed":		seed = Long.parseLong(value);			break;
+			case "mode":		mode = Integer.parseInt(value);			break;
+			case "mixed":		mixed = Boolean.parseBoolean(value);	break;
+			case "parallelResolve":	parallelResolve = Boolean.parseBoolean(value);	break;
+			
+			case "algs":
+				String[] values = value.split(",");
+				algs = new int[values.length];
+				
+				for(int i = 0; i < values.length; i++)
+					algs[i] = Integer.parseInt(values[i].trim());
+				break;
+			
+			default:
+				throw new IllegalArgumentException("Unknown argument: " + key);
+			}
+		}
+		
+		CollisionTest test = new CollisionTest();
+		test.init(seed, regionSize, regionSize, 0);
+		
+		// Run all algorithms by default
+		if(algs == null){
+			algs = new int[test.getAlgorithmCount()];
+			
+			for(int i = 0; i < algs.length; i++)
+				algs[i] = i;
+		}
+		
+		for(int alg : algs)
+			if(mode < test.getAlgorithmModeCount(alg))
+				System.out.println(run(alg, mode, seed, colliders, regionSize, frames, warmup, mixed, parallelResolve));
+	}
+	
+	// Run a single scenario with the given algorithm and return the result as a JSON object
+	public static String run(int alg, int mode, long seed, int colliders, int regionSize, int frames, int warmup, boolean mixed, boolean parallelResolve){
+		
+		// Same seed for every algorithm so all of them start from the same collider layout
+		CollisionTest test = new CollisionTest();
+		test.setMixedSizes(mixed);
+		test.setParallelResolve(parallelResolve);
+		test.init(seed, regionSize, regionSize, colliders);
+		test.setAlgorithm(alg);
+		test.setAlgorithmMode(mode);
+		
+		for(int i = 0; i < warmup; i++)
+			test.step();
+		
+		// Per-frame broadphase times
+		long[] times = new long[frames];
+		long totalPairs = 0;
+		long resolveTime = 0;
+		
+		long startTime = System.nanoTime();
+		
+		for(int i = 0; i < frames; i++){
+			test.step();
+			times[i] = test.getUpdateTimeNs();
+			totalPairs += test.getCollisionCount();
+			resolveTime += test.getResolveTimeNs();
+		}
+		
+		long totalTime = System.nanoTime() - startTime;
+		
+		// Total broadphase time
+		long broadphaseTime = 0;
+		
+		for(long t : times)
+			broadphaseTime += t;
+		
+		Arrays.sort(times);
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append('{');
+		sb.append("\"algorithm\":\"").append(test.getAlgorithmName(alg)).append("\",");
+		sb.append("\"mode\":\"").append(test.getCurrentAlgorithmName()).append("\",");
+		sb.append("\"colliders\":").append(colliders).append(',');
+		sb.append("\"region\":").append(regionSize).append(',');
+		sb.append("\"mixed\":").append(mixed).append(',');
+		sb.append("\"parallelResolve\":").append(parallelResolve).append(',');
+		sb.append("\"frames\":").append(frames).append(',');
+		sb.append("\"seed\":").append(seed).append(',');
+		sb.append("\"meanMs\":").append(format(frames == 0 ? 0 : broadphaseTime / (double)frames)).append(',');
+		sb.append("\"p50Ms\":").append(format(percentile(times, 0.5))).append(',');
+		sb.append("\"p90Ms\":").append(format(percentile(times, 0.9))).append(',');
+		sb.append("\"p99Ms\":").append(format(percentile(times, 0.99))).append(',');
+		sb.append("\"maxMs\":").append(format(frames == 0 ? 0 : times[frames - 1])).append(',');
+		sb.append("\"pairsPerFrame\":").append(frames == 0 ? 0 : totalPairs / frames).append(',');
+		sb.append("\"resolveMeanMs\":").append(format(frames == 0 ? 0 : resolveTime / (double)frames)).append(',');
+		sb.append("\"pairsPerSecond\":").append(String.format(Locale.ROOT, "%.0f", broadphaseTime == 0 ? 0 : totalPairs * 1e9 / broadphaseTime)).append(',');
+		sb.append("\"fps\":").append(String.format(Locale.ROOT, "%.2f", totalTime == 0 ? 0 : frames * 1e9 / totalTime));
+		sb.append('}');
+		
+		return sb.toString();
+	}
+	
+	// Nearest-rank percentile of sorted nanosecond times
+	private static double percentile(long[] sorted, double p){
+		if(sorted.length == 0)
+			return 0;
+		
+		int i = (int)Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+	}
+	
+	// Nanoseconds to milliseconds string
+	private static String format(double ns){
+		return String.format(Locale.ROOT, "%.4f", ns / 1000000d);
+	}
+}
@@ -1,389 +1,1592 @@
-package main;
-
-import java.util.ArrayList;
-
-/**
- * CCBoundingVolumeHierarchy.java
- * 
- * Bounding volume hierarchy collision checking algorithm.
- * 
- * @author Jared
- *
- */
-public class CCBoundingVolumeHierarchy extends CollisionChecker{
-
-    public class Node{
-
-        AABB aabb;
-        AABB aabbMargin;
-        Collider coll;
-        Node parent;
-        Node left;
-        Node right;
-        boolean branchChecked;
-
-        Node(){
-
-            aabb = new AABB();
-            aabbMargin = null;
-            coll = null;
-            parent = null;
-            left = null;
-            right = null;
-            branchChecked = false;
-        }
-
-        boolean isLeaf() {
-            return left == null;
-        }
-    }
-
-    //Private variables and Functions
-    private Node treeRoot;
-    private ArrayList<Collision> overlapPairs;
-    private ArrayList<Node> invalidNodes;
-    private final int AABB_MARGIN = 80;
-    
-    
-	public CCBoundingVolumeHierarchy(ArrayList<Collider> colliders){
-		super(colliders);
-        treeRoot = null;
-        invalidNodes = new ArrayList<Node>();
-        overlapPairs = new ArrayList<Collision>();
-	}
-
-	public ArrayList<Collision> checkCollisions(){
-		
-        overlapPairs.clear();
-
-        // No root or root is leaf, return
-        if(treeRoot == null || treeRoot.isLeaf()){
-            return overlapPairs;
-        }
-
-        // Reset branch checked flags for entire tree
-        resetBranchChecked(treeRoot);
-
-        // Check tree recusively
-        checkOverlap(treeRoot.left, treeRoot.right);
-
-        return overlapPairs;
-	}
-
-    private void addNode(Node myNode, Node myParent){
-
-        // Parent is leaf
-        if(myParent.isLeaf()){
-
-            // Create new branch node
-            Node newNode = new Node();
-            newNode.parent = myParent.parent;
-            newNode.left = myNode;
-            newNode.right = myParent;
-
-            // Update grandparent child
-            if(myParent.parent != null){
-                if(myParent.parent.left == myParent)
-                    myParent.parent.left = newNode;
-                else
-                    myParent.parent.right = newNode;
-            }
-
-            // No grandparent, parent is root
-            else
-                treeRoot = newNode;
-
-            // Set child parents
-            newNode.left.parent = newNode;
-            newNode.right.parent = newNode;
-
-            updateAABB(newNode);
-        }
-
-        // Parent is branch
-        else{
-            // Compute size difference if node is added to either child
-            AABB box	= myNode.aabb;
-            AABB boxLeft	= myParent.left.aabb;
-            AABB boxRight	= myParent.right.aabb;
-
-            //Original areas of left and right AABBs
-            float boxLeftArea = (boxLeft.upperBoundX - boxLeft.lowerBoundX) * (boxLeft.upperBoundY - boxLeft.lowerBoundY);
-            float boxRightArea = (boxRight.upperBoundX - boxRight.lowerBoundX) * (boxRight.upperBoundY - boxRight.lowerBoundY);
-
-            //Calculate new potential areas using min max
-            float boxLeftNewArea = (Math.max(box.upperBoundX, boxLeft.upperBoundX) - Math.min(box.lowerBoundX, boxLeft.lowerBoundX))
-                    * (Math.max(box.upperBoundY, boxLeft.upperBoundY) - Math.min(box.lowerBoundY, boxLeft.lowerBoundY));
-
-            float boxRightNewArea = (Math.max(box.upperBoundX, boxRight.upperBoundX) - Math.min(box.lowerBoundX, boxRight.lowerBoundX))
-                    * (Math.max(box.upperBoundY, boxRight.upperBoundY) - Math.min(box.lowerBoundY, boxRight.lowerBoundY));
-
-            //Find the difference between new potential area and old area.
-            float areaDiff1 = boxLeftNewArea - boxLeftArea;
-            float areaDiff2 = boxRightNewArea - boxRightArea;
-
-            // Add node to child that has less area increase
-            if(areaDiff1 < areaDiff2)
-                addNode(myNode, myParent.left);
-            else
-                addNode(myNode, myParent.right);
-
-            // Update parent
-            //updateAABB(myParent);
-        }
-    }
-
-    private void removeCollider(Collider myCollider, Node myNode){
-
-        if(myNode.left.isLeaf()){
-            if(myNode.left.coll == myCollider){
-                removeNode(myNode.left);
-                return;
-            }
-        }
-        else
-            removeCollider(myCollider, myNode.left);
-
-        if(myNode.right.isLeaf()){
-            if(myNode.right.coll == myCollider)
-                removeNode(myNode.right);
-            return;
-        }
-        else
-            removeCollider(myCollider, myNode.right);
-    }
-
-    private void removeNode(Node myNode){
-
-        //Tree is empty
-        if (treeRoot == null){
-            return;
-        }
-
-        // Node is root
-        if(myNode.parent == null){
-            treeRoot = null;
-
-            return;
-        }
-
-        // Get sibling
-        Node sibling;
-
-        if(myNode.parent.left == myNode){
-            sibling = myNode.parent.right;
-        }
-        else{
-            sibling = myNode.parent.left;
-        }
-
-
-        // Node has grandparent
-        if(myNode.parent.parent != null){
-            sibling.parent = myNode.parent.parent;
-
-            // Replace grandparent child
-            if(sibling.parent.left == myNode.parent) {
-                sibling.parent.left = sibling;
-            }
-            else{
-                sibling.parent.right = sibling;
-            }
-        }
-
-        // Parent is root
-        else{
-            treeRoot = sibling;
-            sibling.parent = null;
-        }
-
-        myNode.parent = null;
-    }
-
-    private void updateAABB(Node myNode){
-    	
-        // Branch node, take min/max of child AABBs
-        if(!myNode.isLeaf()) {
-        	
-            // Use enlarged AABB for children that have them
-
-            //X
-            float clX1 = myNode.left.aabbMargin		!= null	? myNode.left.aabbMargin.lowerBoundX	: myNode.left.aabb.lowerBoundX;
-            float clX2 = myNode.right.aabbMargin	!= null	? myNode.right.aabbMargin.lowerBoundX	: myNode.right.aabb.lowerBoundX;
-            float cuX1 = myNode.left.aabbMargin		!= null	? myNode.left.aabbMargin.upperBoundX	: myNode.left.aabb.upperBoundX;
-            float cuX2 = myNode.right.aabbMargin	!= null	? myNode.right.aabbMargin.upperBoundX	: myNode.right.aabb.upperBoundX;
-
-            myNode.aabb.lowerBoundX = Math.min(clX1, clX2);
-            myNode.aabb.upperBoundX = Math.max(cuX1, cuX2);
-
-            //Y
-            float clY1 = myNode.left.aabbMargin		!= null	? myNode.left.aabbMargin.lowerBoundY	: myNode.left.aabb.lowerBoundY;
-            float clY2 = myNode.right.aabbMargin	!= null ? myNode.right.aabbMargin.lowerBoundY	: myNode.right.aabb.lowerBoundY;
-            float cuY1 = myNode.left.aabbMargin		!= null ? myNode.left.aabbMargin.upperBoundY	: myNode.left.aabb.upperBoundY;
-            float cuY2 = myNode.right.aabbMargin	!= null ? myNode.right.aabbMargin.upperBoundY	: myNode.right.aabb.upperBoundY;
-
-            myNode.aabb.lowerBoundY = Math.min(clY1, clY2);
-            myNode.aabb.upperBoundY = Math.max(cuY1, cuY2);
-
-        }
-        
-        if(myNode.parent != null)
-        	updateAABB(myNode.parent);
-    }
-
-    private void resetBranchChecked(Node myNode){
-        myNode.branchChecked = false;
-
-        if(!myNode.isLeaf()){
-            if(!myNode.left.isLeaf()) resetBranchChecked(myNode.left);
-            if(!myNode.right.isLeaf()) resetBranchChecked(myNode.right);
-        }
-    }
-
-    private void checkOverlap(Node node1, Node node2){
-
-        if (!node1.isLeaf() && !node1.branchChecked){
-            checkOverlap(node1.left, node1.right);
-            node1.branchChecked = true;
-        }
-
-        if (!node2.isLeaf() && !node2.branchChecked){
-            checkOverlap(node2.left, node2.right);
-            node2.branchChecked = true;
-        }
-
-        //CheckOverlap
-        if (!node1.aabb.isOverlapping(node2.aabb)){
-            return;
-        }
-
-        // Two leaf nodes
-        if(node1.isLeaf() && node2.isLeaf()){
-
-            // Add to list if overlapping
-            overlapPairs.add(new Collision(node1.coll, node2.coll));
-            return;
-        }
-
-        // Check overlaps in children
-        if(!node1.isLeaf() && !node1.branchChecked){
-            checkOverlap(node1.left, node1.right);
-            node1.branchChecked = true;
-        }
-
-        if(!node2.isLeaf() && !node2.branchChecked){
-            checkOverlap(node2.left, node2.right);
-            node2.branchChecked = true;
-        }
-
-
-        // Check overlaps between children
-        if(!node1.isLeaf()){
-            if(!node2.isLeaf()){
-                // Both nodes are branches, check them against each other
-                checkOverlap(node1.left, node2.left);
-                checkOverlap(node1.left, node2.right);
-                checkOverlap(node1.right, node2.left);
-                checkOverlap(node1.right, node2.right);
-            }
-            else{
-                checkOverlap(node1.left, node2);
-                checkOverlap(node1.right, node2);
-            }
-        }
-        else{
-            checkOverlap(node1, node2.left);
-            checkOverlap(node1, node2.right);
-        }
-    }
-    
-    public void update(){
-
-        if(treeRoot == null)
-            return;
-
-        // Clear invalid nodes
-        invalidNodes.clear();
-
-        // Update tree
-        updateNode(treeRoot);
-        
-        // Re-insert invaild nodes
-        for(Node myNode : invalidNodes){
-
-            // Update large AABB
-            myNode.aabbMargin.lowerBoundX = myNode.aabb.lowerBoundX - AABB_MARGIN;
-            myNode.aabbMargin.upperBoundX = myNode.aabb.upperBoundX + AABB_MARGIN;
-
-            myNode.aabbMargin.lowerBoundY = myNode.aabb.lowerBoundY - AABB_MARGIN;
-            myNode.aabbMargin.upperBoundY = myNode.aabb.upperBoundY + AABB_MARGIN;
-
-            // Remove and add again
-            removeNode(myNode);
-            addNode(myNode, treeRoot);
-        }
-    }
-
-    private void updateNode(Node myNode){
-
-        // Node is leaf
-        if(myNode.isLeaf()){
-
-            //updateAABB(myNode);
-            // If AABB has moved outside margin, mark it invalid
-            if(		myNode.aabb.lowerBoundX < myNode.aabbMargin.lowerBoundX ||
-                    myNode.aabb.lowerBoundY < myNode.aabbMargin.lowerBoundY ||
-                    myNode.aabb.upperBoundX > myNode.aabbMargin.upperBoundX ||
-                    myNode.aabb.upperBoundY > myNode.aabbMargin.upperBoundY){
-
-                invalidNodes.add(myNode);
-            }
-        }
-
-        // Node is branch, update children
-        else{
-            updateNode(myNode.left);
-            updateNode(myNode.right);
-        }
-    }
-    
-    public void add(Collider myCollider){
-
-        // Create node for this collider
-        Node myNode = new Node();
-        myNode.coll = myCollider;
-        myNode.aabb = myCollider.getAABB();
-        
-        myNode.aabbMargin = new AABB();
-        myNode.aabbMargin.lowerBoundX = myNode.aabb.lowerBoundX - AABB_MARGIN;
-        myNode.aabbMargin.upperBoundX = myNode.aabb.upperBoundX + AABB_MARGIN;
-
-        myNode.aabbMargin.lowerBoundX = myNode.aabb.lowerBoundY - AABB_MARGIN;
-        myNode.aabbMargin.upperBoundX = myNode.aabb.upperBoundY + AABB_MARGIN;
-        
-        // First node
-        if(treeRoot == null)
-            treeRoot = myNode;
-        else
-            addNode(myNode, treeRoot);
-    }
-
-    public void remove(Collider myCollider) {
-
-        if(treeRoot == null) {
-            return;
-        }
-
-        // Root node contains collider
-        if(treeRoot.isLeaf() && treeRoot.coll == myCollider)
-            removeNode(treeRoot);
-
-        // Search for and remove collider node
-        else
-            removeCollider(myCollider, treeRoot);
-    }
-    
-    public Node getRoot(){
-    	return treeRoot;
-    }
-}
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * CCBoundingVolumeHierarchy.java
+ * 
+ * Bounding volume hierarchy collision checking algorithm.
+ * 
+ * Nodes are stored in parallel primitive arrays and referenced by index. Leaves hold a collider id and an
+ * AABB enlarged by a margin, branches hold the union of their children. Freed nodes are kept in a free list
+ * and reused.
+ * 
+ * Batches of colliders can be loaded with addAll(), which rebuilds the tree top-down with a binned surface
+ * area heuristic. In 2D the probability of a box being hit is proportional to its perimeter, so perimeter is
+ * used as the surface area. Subtrees of the build are split across a ForkJoinPool.
+ * 
+ * Insertion and removal rebalance the ancestors of the changed node with local rotations, as in Box2D's
+ * dynamic tree. Unbalanced nodes are rotated to reduce height, other nodes swap a child with a grandchild
+ * when that lowers the surface area without making the node taller.
+ * 
+ * Parallel mode expands the top of the traversal into independent subtree pairs, which are traversed on a
+ * ForkJoinPool. Tasks keep the order the serial traversal would reach them in, and their output is merged in that
+ * order, so the output is identical to the serial mode.
+ * 
+ * Incremental mode keeps a cache of leaf pairs whose fat AABBs overlap, as in Box2D's broadphase. Leaves
+ * whose fat AABB changed since the last check are put in a move buffer, and only those are queried against
+ * the tree for new pairs. Cached pairs are dropped once their fat AABBs stop overlapping.
+ * 
+ * The tree also answers region, point, ray and nearest neighbour queries, writing ids to an IdBuffer.
+ * 
+ * @author Jared
+ *
+ */
+public class CCBoundingVolumeHierarchy extends CollisionChecker{
+
+    public static final int NULL_NODE = -1;
+
+    public static final int MODE_SERIAL = 0;
+    public static final int MODE_PARALLEL = 1;
+    public static final int MODE_INCREMENTAL = 2;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Number of bins per axis when searching for the best split
+    private static final int BUILD_BINS = 16;
+
+    // Subtrees with fewer leaves than this are built on the current thread
+    private static final int PARALLEL_BUILD_CUTOFF = 4096;
+
+    // addAll() rebuilds the whole tree when the batch is at least this fraction of the leaves
+    private static final float REBUILD_FRACTION = 0.25f;
+
+    // Parallel traversal expands subtree pairs taller than this into smaller tasks
+    private static final int PARALLEL_SPLIT_HEIGHT = 8;
+
+    // Parallel traversal stops expanding once there are this many tasks per pool thread
+    private static final int TASKS_PER_THREAD = 32;
+
+    // Children may differ in height by this much before a rotation, strict AVL balance (1) costs too much area
+    private static final int MAX_HEIGHT_DIFF = 2;
+
+    // Default leaf margins, tuned on the benchmark scene where colliders move up to 3 units per frame
+    private static final float DEFAULT_MIN_MARGIN = 20;
+    private static final float DEFAULT_MARGIN_FRAMES = 20;
+
+    // Node bounds, enlarged by the margin for leaves
+    private float[] lowerBoundX;
+    private float[] lowerBoundY;
+    private float[] upperBoundX;
+    private float[] upperBoundY;
+
+    // Tree links, left is NULL_NODE for leaves
+    // For free nodes, parent is the next free node
+    private int[] parent;
+    private int[] left;
+    private int[] right;
+
+    // Collider id of leaves
+    private int[] collider;
+
+    // Leaf node of each collider id, NULL_NODE if the collider has none
+    private int[] leafOf;
+
+    // Leaves are height 0, free nodes are -1
+    private int[] height;
+
+    private int nodeCapacity;
+    private int nodeCount;
+    private int leafCount;
+    private int freeList;
+
+    // Leaves being built and the branch nodes reserved for them
+    // Leaf bounds are copied in build order, so the passes over a range read memory sequentially
+    private int[] buildLeaves;
+    private float[] buildLowerX, buildLowerY, buildUpperX, buildUpperY;
+    private int[] buildBranches;
+    private ForkJoinPool buildPool;
+    private boolean parallelBuild = true;
+
+    //Private variables and Functions
+    private int treeRoot;
+    private int[] invalidNodes;
+    private int numInvalidNodes;
+
+    // Node pairs left to check during serial traversal
+    private final PairStack stack = new PairStack();
+
+    // Subtree pairs traversed as separate tasks in parallel mode, and the stack of each pool thread
+    private PairStack tasks = new PairStack();
+    private PairStack nextTasks = new PairStack();
+    private final ThreadLocal<PairStack> taskStacks = ThreadLocal.withInitial(PairStack::new);
+
+    // Child pairs and leaf pairs of a task while it is split
+    private final PairStack splitStack = new PairStack();
+    private final PairBuffer splitPairs = new PairBuffer();
+
+    // Leaves whose fat AABB changed since the last incremental check
+    private int[] moveBuffer = new int[DEFAULT_CAPACITY];
+    private int moveCount;
+
+    // Leaf pairs with overlapping fat AABBs, as a list for the per frame scan and a set to skip duplicates
+    private int[] cacheA = new int[DEFAULT_CAPACITY];
+    private int[] cacheB = new int[DEFAULT_CAPACITY];
+    private int cacheCount;
+    private final PairSet cacheSet = new PairSet();
+
+    // False until the incremental mode has filled the cache, and again after another mode has run
+    private boolean pairCacheValid;
+
+    // Node stack of queries, queries are not thread safe
+    private int[] queryStack = new int[DEFAULT_CAPACITY];
+
+    // Result of the last raycast
+    private float rayDistance;
+
+    // Node heap and best colliders of nearest queries
+    private int[] nodeHeap = new int[DEFAULT_CAPACITY];
+    private float[] nodeHeapDist = new float[DEFAULT_CAPACITY];
+    private int[] nearestIds = new int[0];
+    private float[] nearestDist = new float[0];
+
+    private final ParallelPairKernel kernel;
+    private final ParallelPairKernel.Job taskJob = this::checkTasks;
+
+    // Leaf margins: minMargin on every side, extended by marginFrames frames of motion in the direction of
+    // the collider's velocity
+    private float minMargin = DEFAULT_MIN_MARGIN;
+    private float marginFrames = DEFAULT_MARGIN_FRAMES;
+
+
+	public CCBoundingVolumeHierarchy(ColliderStore colliders){
+        this(colliders, new ParallelPairKernel());
+	}
+
+	public CCBoundingVolumeHierarchy(ColliderStore colliders, ParallelPairKernel kernel){
+		super(colliders, "Serial", "Parallel", "Incremental");
+        this.kernel = kernel;
+        treeRoot = NULL_NODE;
+        invalidNodes = new int[0];
+        leafOf = new int[0];
+        buildLeaves = new int[0];
+        buildLowerX = buildLowerY = buildUpperX = buildUpperY = new float[0];
+        buildBranches = new int[0];
+        buildPool = ForkJoinPool.commonPool();
+
+        nodeCapacity = DEFAULT_CAPACITY;
+        lowerBoundX = new float[nodeCapacity];
+        lowerBoundY = new float[nodeCapacity];
+        upperBoundX = new float[nodeCapacity];
+        upperBoundY = new float[nodeCapacity];
+        parent = new int[nodeCapacity];
+        left = new int[nodeCapacity];
+        right = new int[nodeCapacity];
+        collider = new int[nodeCapacity];
+        height = new int[nodeCapacity];
+
+        buildFreeList(0);
+	}
+
+	public void checkCollisions(PairBuffer pairs){
+
+        // No root or root is leaf, return
+        if(treeRoot == NULL_NODE || isLeaf(treeRoot)){
+            return;
+        }
+
+        if(mode == MODE_INCREMENTAL){
+            checkCachedPairs(pairs);
+            return;
+        }
+
+        pairCacheValid = false;
+        moveCount = 0;
+
+        if(mode == MODE_PARALLEL){
+            splitTasks();
+            kernel.run(tasks.size, taskJob, pairs);
+            return;
+        }
+
+        stack.size = 0;
+        stack.push(treeRoot, treeRoot);
+        traverse(stack, pairs);
+	}
+
+    private void checkCachedPairs(PairBuffer pairs){
+
+        // Start from an empty cache with every leaf moved
+        if(!pairCacheValid){
+            cacheCount = 0;
+            cacheSet.clear();
+            moveCount = 0;
+            pairCacheValid = true;
+
+            for(int i = 0; i < nodeCapacity; i++)
+                if(height[i] == 0)
+                    bufferMove(i);
+        }
+
+        // Find new pairs of moved leaves, nodes that were freed or reused as branches are skipped
+        for(int i = 0; i < moveCount; i++)
+            if(height[moveBuffer[i]] == 0)
+                queryPairs(moveBuffer[i]);
+
+        moveCount = 0;
+
+        // Drop pairs whose fat AABBs no longer overlap or whose nodes are no longer leaves, and report the rest
+        // whose colliders overlap
+        int kept = 0;
+
+        for(int i = 0; i < cacheCount; i++){
+            int node1 = cacheA[i];
+            int node2 = cacheB[i];
+
+            if(height[node1] != 0 || height[node2] != 0 || !isOverlapping(node1, node2)){
+                cacheSet.remove(node1, node2);
+                continue;
+            }
+
+            cacheA[kept] = node1;
+            cacheB[kept] = node2;
+            kept++;
+
+            if(colliders.isOverlapping(collider[node1], collider[node2]))
+                pairs.add(collider[node1], collider[node2]);
+        }
+
+        cacheCount = kept;
+    }
+
+    // Add the leaves whose fat AABB overlaps a leaf to the pair cache
+    private void queryPairs(int myNode){
+
+        int stackSize = 0;
+        queryStack[stackSize++] = treeRoot;
+
+        while(stackSize > 0){
+            int node = queryStack[--stackSize];
+
+            if(node == myNode || !isOverlapping(node, myNode))
+                continue;
+
+            if(isLeaf(node)){
+                if(cacheSet.add(node, myNode)){
+                    if(cacheCount == cacheA.length){
+                        cacheA = Arrays.copyOf(cacheA, cacheCount * 2);
+                        cacheB = Arrays.copyOf(cacheB, cacheCount * 2);
+                    }
+
+                    cacheA[cacheCount] = node;
+                    cacheB[cacheCount] = myNode;
+                    cacheCount++;
+                }
+                continue;
+            }
+
+            if(stackSize + 2 > queryStack.length)
+                queryStack = Arrays.copyOf(queryStack, queryStack.length * 2);
+
+            queryStack[stackSize++] = left[node];
+            queryStack[stackSize++] = right[node];
+        }
+    }
+
+    // Remember a leaf whose fat AABB changed, only needed while the incremental mode keeps its cache
+    private void bufferMove(int myNode){
+
+        if(!pairCacheValid)
+            return;
+
+        if(moveCount == moveBuffer.length)
+            moveBuffer = Arrays.copyOf(moveBuffer, moveCount * 2);
+
+        moveBuffer[moveCount++] = myNode;
+    }
+
+    // Check node pairs until the stack is empty
+    // Each pair is pushed once by its parent pair, so no subtree pair is visited twice
+    private void traverse(PairStack stack, PairBuffer pairs){
+        while(stack.size > 0){
+            stack.size--;
+            expand(stack.a[stack.size], stack.b[stack.size], stack, pairs);
+        }
+    }
+
+    // Push the child pairs of a node pair, a pair of the same node stands for the pairs inside it
+    private void expand(int node1, int node2, PairStack stack, PairBuffer pairs){
+
+        // Pairs within a branch: the two children against each other, then each child on its own
+        if(node1 == node2){
+            int child1 = left[node1];
+            int child2 = right[node1];
+
+            visit(child1, child2, stack, pairs);
+
+            if(!isLeaf(child1))
+                stack.push(child1, child1);
+            if(!isLeaf(child2))
+                stack.push(child2, child2);
+            return;
+        }
+
+        // Descend into the larger node, so both sides shrink at a similar rate
+        if(isLeaf(node2) || (!isLeaf(node1) && perimeter(node1) >= perimeter(node2))){
+            visit(left[node1], node2, stack, pairs);
+            visit(right[node1], node2, stack, pairs);
+        }
+        else{
+            visit(node1, left[node2], stack, pairs);
+            visit(node1, right[node2], stack, pairs);
+        }
+    }
+
+    // Test two leaves directly, or push two overlapping nodes to be expanded later
+    private void visit(int node1, int node2, PairStack stack, PairBuffer pairs){
+
+        if(isLeaf(node1) && isLeaf(node2)){
+
+            // Add to list if the colliders themselves overlap
+            if(colliders.isOverlapping(collider[node1], collider[node2]))
+                pairs.add(collider[node1], collider[node2]);
+            return;
+        }
+
+        if(isOverlapping(node1, node2))
+            stack.push(node1, node2);
+    }
+
+    // Expand the top of the traversal level by level until the tasks are short enough or numerous enough
+    // to spread over the pool. Each task is replaced by what the serial traversal does in its place: the leaf
+    // pairs it finds, then its child pairs in the order they are popped. Checking the tasks in order then gives
+    // the same output as the serial traversal
+    private void splitTasks(){
+
+        int targetTasks = kernel.getParallelism() * TASKS_PER_THREAD;
+
+        tasks.size = 0;
+        tasks.push(treeRoot, treeRoot);
+
+        boolean expanded = true;
+
+        while(expanded && tasks.size < targetTasks){
+            expanded = false;
+            nextTasks.size = 0;
+
+            for(int i = 0; i < tasks.size; i++){
+                int node1 = tasks.a[i];
+                int node2 = tasks.b[i];
+
+                if(Math.max(height[node1], height[node2]) > PARALLEL_SPLIT_HEIGHT){
+                    splitStack.size = 0;
+                    splitPairs.clear();
+                    expand(node1, node2, splitStack, splitPairs);
+
+                    // Leaf pairs are kept as tasks of their two leaves
+                    for(int j = 0; j < splitPairs.size(); j++)
+                        nextTasks.push(getLeaf(splitPairs.getA(j)), getLeaf(splitPairs.getB(j)));
+
+                    for(int j = splitStack.size - 1; j >= 0; j--)
+                        nextTasks.push(splitStack.a[j], splitStack.b[j]);
+
+                    expanded = true;
+                }
+                else
+                    nextTasks.push(node1, node2);
+            }
+
+            PairStack swap = tasks;
+            tasks = nextTasks;
+            nextTasks = swap;
+        }
+    }
+
+    // Traverse a range of tasks on a pool thread
+    private void checkTasks(int start, int end, PairBuffer pairs){
+
+        PairStack stack = taskStacks.get();
+
+        for(int i = start; i < end; i++){
+            int node1 = tasks.a[i];
+            int node2 = tasks.b[i];
+
+            // Leaf pair found while splitting, its colliders are known to overlap
+            if(isLeaf(node1) && isLeaf(node2)){
+                pairs.add(collider[node1], collider[node2]);
+                continue;
+            }
+
+            stack.size = 0;
+            stack.push(node1, node2);
+            traverse(stack, pairs);
+        }
+    }
+
+    // Link nodes from index start to the end of the arrays into the free list
+    private void buildFreeList(int start){
+        for(int i = start; i < nodeCapacity; i++){
+            parent[i] = i + 1 < nodeCapacity ? i + 1 : NULL_NODE;
+            height[i] = -1;
+        }
+        freeList = start;
+    }
+
+    private int allocateNode(){
+
+        // Grow node arrays
+        if(freeList == NULL_NODE){
+            int oldCapacity = nodeCapacity;
+            nodeCapacity *= 2;
+
+            lowerBoundX = Arrays.copyOf(lowerBoundX, nodeCapacity);
+            lowerBoundY = Arrays.copyOf(lowerBoundY, nodeCapacity);
+            upperBoundX = Arrays.copyOf(upperBoundX, nodeCapacity);
+            upperBoundY = Arrays.copyOf(upperBoundY, nodeCapacity);
+            parent = Arrays.copyOf(parent, nodeCapacity);
+            left = Arrays.copyOf(left, nodeCapacity);
+            right = Arrays.copyOf(right, nodeCapacity);
+            collider = Arrays.copyOf(collider, nodeCapacity);
+            height = Arrays.copyOf(height, nodeCapacity);
+
+            buildFreeList(oldCapacity);
+        }
+
+        int node = freeList;
+        freeList = parent[node];
+
+        parent[node] = NULL_NODE;
+        left[node] = NULL_NODE;
+        right[node] = NULL_NODE;
+        collider[node] = -1;
+        height[node] = 0;
+        nodeCount++;
+
+        return node;
+    }
+
+    private void freeNode(int node){
+        parent[node] = freeList;
+        height[node] = -1;
+        freeList = node;
+        nodeCount--;
+    }
+
+    private void addNode(int myNode){
+
+        // First node
+        if(treeRoot == NULL_NODE){
+            treeRoot = myNode;
+            parent[myNode] = NULL_NODE;
+            return;
+        }
+
+        // Descend to the leaf whose AABB grows least
+        int myParent = treeRoot;
+
+        while(!isLeaf(myParent)){
+            int boxLeft = left[myParent];
+            int boxRight = right[myParent];
+
+            //Original areas of left and right AABBs
+            float boxLeftArea = area(boxLeft);
+            float boxRightArea = area(boxRight);
+
+            //Calculate new potential areas using min max
+            float boxLeftNewArea = (Math.max(upperBoundX[myNode], upperBoundX[boxLeft]) - Math.min(lowerBoundX[myNode], lowerBoundX[boxLeft]))
+                    * (Math.max(upperBoundY[myNode], upperBoundY[boxLeft]) - Math.min(lowerBoundY[myNode], lowerBoundY[boxLeft]));
+
+            float boxRightNewArea = (Math.max(upperBoundX[myNode], upperBoundX[boxRight]) - Math.min(lowerBoundX[myNode], lowerBoundX[boxRight]))
+                    * (Math.max(upperBoundY[myNode], upperBoundY[boxRight]) - Math.min(lowerBoundY[myNode], lowerBoundY[boxRight]));
+
+            //Find the difference between new potential area and old area.
+            float areaDiff1 = boxLeftNewArea - boxLeftArea;
+            float areaDiff2 = boxRightNewArea - boxRightArea;
+
+            // Add node to child that has less area increase
+            myParent = areaDiff1 < areaDiff2 ? boxLeft : boxRight;
+        }
+
+        // Create new branch node
+        int newNode = allocateNode();
+        int grandparent = parent[myParent];
+        parent[newNode] = grandparent;
+        left[newNode] = myNode;
+        right[newNode] = myParent;
+
+        // Update grandparent child
+        if(grandparent != NULL_NODE){
+            if(left[grandparent] == myParent)
+                left[grandparent] = newNode;
+            else
+                right[grandparent] = newNode;
+        }
+
+        // No grandparent, parent is root
+        else
+            treeRoot = newNode;
+
+        // Set child parents
+        parent[myNode] = newNode;
+        parent[myParent] = newNode;
+
+        updateAABB(newNode);
+    }
+
+    // Unlink a leaf from the tree and free its parent, the leaf itself is kept
+    private void removeNode(int myNode){
+
+        // Node is root
+        if(parent[myNode] == NULL_NODE){
+            treeRoot = NULL_NODE;
+            return;
+        }
+
+        // Get sibling
+        int myParent = parent[myNode];
+        int sibling = left[myParent] == myNode ? right[myParent] : left[myParent];
+        int grandparent = parent[myParent];
+
+        // Node has grandparent
+        if(grandparent != NULL_NODE){
+            parent[sibling] = grandparent;
+
+            // Replace grandparent child
+            if(left[grandparent] == myParent) {
+                left[grandparent] = sibling;
+            }
+            else{
+                right[grandparent] = sibling;
+            }
+
+            updateAABB(grandparent);
+        }
+
+        // Parent is root
+        else{
+            treeRoot = sibling;
+            parent[sibling] = NULL_NODE;
+        }
+
+        freeNode(myParent);
+        parent[myNode] = NULL_NODE;
+    }
+
+    // Rebalance and refit a branch and its ancestors
+    private void updateAABB(int myNode){
+
+        while(myNode != NULL_NODE){
+            myNode = balance(myNode);
+            refit(myNode);
+
+            myNode = parent[myNode];
+        }
+    }
+
+    // Set a branch's bounds and height from its children
+    private void refit(int myNode){
+        int l = left[myNode];
+        int r = right[myNode];
+
+        lowerBoundX[myNode] = Math.min(lowerBoundX[l], lowerBoundX[r]);
+        lowerBoundY[myNode] = Math.min(lowerBoundY[l], lowerBoundY[r]);
+        upperBoundX[myNode] = Math.max(upperBoundX[l], upperBoundX[r]);
+        upperBoundY[myNode] = Math.max(upperBoundY[l], upperBoundY[r]);
+
+        height[myNode] = 1 + Math.max(height[l], height[r]);
+    }
+
+    // Rotate a branch whose children differ in height by more than MAX_HEIGHT_DIFF, or otherwise swap a child with a
+    // grandchild if that lowers the perimeter of the inner node. Returns the node now at the top of the subtree
+    private int balance(int a){
+
+        if(height[a] < 2)
+            return a;
+
+        int b = left[a];
+        int c = right[a];
+        int heightDiff = height[c] - height[b];
+
+        // Rotate c up
+        if(heightDiff > MAX_HEIGHT_DIFF){
+            int f = left[c];
+            int g = right[c];
+
+            replaceChild(parent[a], a, c);
+            parent[c] = parent[a];
+            left[c] = a;
+            parent[a] = c;
+
+            // The taller grandchild stays under c
+            if(height[f] > height[g]){
+                right[c] = f;
+                right[a] = g;
+                parent[g] = a;
+            }
+            else{
+                right[c] = g;
+                right[a] = f;
+                parent[f] = a;
+            }
+
+            refit(a);
+            refit(c);
+            return c;
+        }
+
+        // Rotate b up
+        if(heightDiff < -MAX_HEIGHT_DIFF){
+            int d = left[b];
+            int e = right[b];
+
+            replaceChild(parent[a], a, b);
+            parent[b] = parent[a];
+            left[b] = a;
+            parent[a] = b;
+
+            if(height[d] > height[e]){
+                right[b] = d;
+                left[a] = e;
+                parent[e] = a;
+            }
+            else{
+                right[b] = e;
+                left[a] = d;
+                parent[d] = a;
+            }
+
+            refit(a);
+            refit(b);
+            return b;
+        }
+
+        // Balanced, look for the swap that lowers the perimeter most
+        float bestDiff = 0;
+        int bestChild = NULL_NODE;
+        int bestGrandchild = NULL_NODE;
+
+        if(!isLeaf(c)){
+            float diff = unionPerimeter(b, right[c]) - perimeter(c);
+            if(diff < bestDiff && height[b] <= height[left[c]]){
+                bestDiff = diff;
+                bestChild = b;
+                bestGrandchild = left[c];
+            }
+
+            diff = unionPerimeter(b, left[c]) - perimeter(c);
+            if(diff < bestDiff && height[b] <= height[right[c]]){
+                bestDiff = diff;
+                bestChild = b;
+                bestGrandchild = right[c];
+            }
+        }
+
+        if(!isLeaf(b)){
+            float diff = unionPerimeter(c, right[b]) - perimeter(b);
+            if(diff < bestDiff && height[c] <= height[left[b]]){
+                bestDiff = diff;
+                bestChild = c;
+                bestGrandchild = left[b];
+            }
+
+            diff = unionPerimeter(c, left[b]) - perimeter(b);
+            if(diff < bestDiff && height[c] <= height[right[b]]){
+                bestDiff = diff;
+                bestChild = c;
+                bestGrandchild = right[b];
+            }
+        }
+
+        // Swapping with a grandchild at least as tall keeps the height of a
+        if(bestChild != NULL_NODE){
+            int inner = parent[bestGrandchild];
+
+            replaceChild(a, bestChild, bestGrandchild);
+            parent[bestGrandchild] = a;
+
+            replaceChild(inner, bestGrandchild, bestChild);
+            parent[bestChild] = inner;
+
+            refit(inner);
+        }
+
+        return a;
+    }
+
+    // Point a parent's link at a new child, or the root if there is no parent
+    private void replaceChild(int myParent, int oldChild, int newChild){
+        if(myParent == NULL_NODE)
+            treeRoot = newChild;
+        else if(left[myParent] == oldChild)
+            left[myParent] = newChild;
+        else
+            right[myParent] = newChild;
+    }
+
+    public void update(){
+
+        if(treeRoot == NULL_NODE)
+            return;
+
+        // Clear invalid nodes
+        numInvalidNodes = 0;
+
+        // Find leaves whose collider has moved outside the margin, scanning the node arrays in order
+        for(int i = 0; i < nodeCapacity; i++){
+            if(height[i] != 0)
+                continue;
+
+            int id = collider[i];
+
+            if(		colliders.lowerBoundX[id] < lowerBoundX[i] ||
+                    colliders.lowerBoundY[id] < lowerBoundY[i] ||
+                    colliders.upperBoundX[id] > upperBoundX[i] ||
+                    colliders.upperBoundY[id] > upperBoundY[i]){
+
+                if(numInvalidNodes == invalidNodes.length)
+                    invalidNodes = Arrays.copyOf(invalidNodes, Math.max(16, invalidNodes.length * 2));
+
+                invalidNodes[numInvalidNodes++] = i;
+            }
+        }
+
+        // Re-insert invaild nodes
+        for(int i = 0; i < numInvalidNodes; i++){
+            int myNode = invalidNodes[i];
+
+            // Remove, update large AABB and add again
+            removeNode(myNode);
+            setMarginAABB(myNode);
+            addNode(myNode);
+        }
+    }
+
+    // Set a leaf's bounds to its collider's AABB enlarged by the margin
+    private void setMarginAABB(int myNode){
+        int id = collider[myNode];
+
+        float dx = colliders.velX[id] * marginFrames;
+        float dy = colliders.velY[id] * marginFrames;
+
+        lowerBoundX[myNode] = colliders.lowerBoundX[id] - minMargin + Math.min(dx, 0);
+        upperBoundX[myNode] = colliders.upperBoundX[id] + minMargin + Math.max(dx, 0);
+
+        lowerBoundY[myNode] = colliders.lowerBoundY[id] - minMargin + Math.min(dy, 0);
+        upperBoundY[myNode] = colliders.upperBoundY[id] + minMargin + Math.max(dy, 0);
+
+        bufferMove(myNode);
+    }
+
+    public void add(Collider myCollider){
+
+        // Create node for this collider
+        int myNode = allocateNode();
+        setLeaf(myCollider.getId(), myNode);
+        setMarginAABB(myNode);
+        leafCount++;
+
+        addNode(myNode);
+    }
+
+    // Add colliders with ids from firstId to firstId + count - 1
+    // Large batches rebuild the whole tree, small ones are inserted one at a time
+    public void addAll(int firstId, int count){
+
+        boolean rebuild = count >= (leafCount + count) * REBUILD_FRACTION;
+
+        for(int id = firstId; id < firstId + count; id++){
+            int myNode = allocateNode();
+            setLeaf(id, myNode);
+            setMarginAABB(myNode);
+            leafCount++;
+
+            if(!rebuild)
+                addNode(myNode);
+        }
+
+        if(rebuild)
+            rebuild();
+    }
+
+    // Rebuild the tree top-down from its leaves with a binned SAH
+    public void rebuild(){
+
+        if(buildLeaves.length < leafCount){
+            buildLeaves = new int[leafCount];
+            buildLowerX = new float[leafCount];
+            buildLowerY = new float[leafCount];
+            buildUpperX = new float[leafCount];
+            buildUpperY = new float[leafCount];
+        }
+
+        // Collect leaves and free all branches
+        // Centroids are kept doubled during the build to skip the division
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        int n = 0;
+
+        for(int i = 0; i < nodeCapacity; i++){
+            if(height[i] == 0){
+                buildLeaves[n] = i;
+                buildLowerX[n] = lowerBoundX[i];
+                buildLowerY[n] = lowerBoundY[i];
+                buildUpperX[n] = upperBoundX[i];
+                buildUpperY[n] = upperBoundY[i];
+                minX = Math.min(minX, lowerBoundX[i] + upperBoundX[i]);
+                minY = Math.min(minY, lowerBoundY[i] + upperBoundY[i]);
+                maxX = Math.max(maxX, lowerBoundX[i] + upperBoundX[i]);
+                maxY = Math.max(maxY, lowerBoundY[i] + upperBoundY[i]);
+                n++;
+            }
+            else if(height[i] > 0)
+                freeNode(i);
+        }
+
+        if(n == 0){
+            treeRoot = NULL_NODE;
+            return;
+        }
+
+        // Reserve the n - 1 branch nodes up front, so subtrees can be built on different threads
+        if(buildBranches.length < n - 1)
+            buildBranches = new int[n - 1];
+
+        for(int i = 0; i < n - 1; i++)
+            buildBranches[i] = allocateNode();
+
+        BuildTask task = new BuildTask(0, n, 0, minX, minY, maxX, maxY);
+
+        if(parallelBuild && n >= PARALLEL_BUILD_CUTOFF)
+            buildPool.invoke(task);
+        else
+            task.compute();
+
+        treeRoot = task.root;
+        parent[treeRoot] = NULL_NODE;
+    }
+
+    // Builds the subtree over buildLeaves[start, end) from the end - start - 1 reserved branches at branchStart
+    // The root takes the first branch, then the left subtree's branches follow and the right subtree's after
+    // them, so no two tasks write the same node
+    private class BuildTask extends RecursiveAction{
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start, end, branchStart;
+        private final float minX, minY, maxX, maxY;
+        int root;
+
+        // Leaf counts and bounds of each bin, x axis bins first
+        private final int[] binCount = new int[BUILD_BINS * 2];
+        private final float[] binBounds = new float[BUILD_BINS * 2 * 4];
+
+        // Cost of everything right of each split
+        private final float[] rightCost = new float[BUILD_BINS];
+
+        // Centroid bounds of both halves after a split, left then right
+        private final float[] splitBounds = new float[8];
+
+        BuildTask(int start, int end, int branchStart, float minX, float minY, float maxX, float maxY){
+            this.start = start;
+            this.end = end;
+            this.branchStart = branchStart;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        protected void compute(){
+            root = build(start, end, branchStart, minX, minY, maxX, maxY);
+        }
+
+        private int build(int start, int end, int branchStart, float minX, float minY, float maxX, float maxY){
+
+            // Single leaf
+            if(end - start == 1)
+                return buildLeaves[start];
+
+            // Two leaves need no split search, and their children don't use centroid bounds
+            int mid = end - start == 2 ? start + 1 : split(start, end, minX, minY, maxX, maxY);
+            int myNode = buildBranches[branchStart];
+            int rightBranchStart = branchStart + (mid - start);
+            int l, r;
+
+            float[] sb = splitBounds;
+
+            // Fork large subtrees
+            if(parallelBuild && end - start >= PARALLEL_BUILD_CUTOFF){
+                BuildTask leftTask = new BuildTask(start, mid, branchStart + 1, sb[0], sb[1], sb[2], sb[3]);
+                BuildTask rightTask = new BuildTask(mid, end, rightBranchStart, sb[4], sb[5], sb[6], sb[7]);
+                invokeAll(leftTask, rightTask);
+                l = leftTask.root;
+                r = rightTask.root;
+            }
+            else{
+                float rMinX = sb[4], rMinY = sb[5], rMaxX = sb[6], rMaxY = sb[7];
+                l = build(start, mid, branchStart + 1, sb[0], sb[1], sb[2], sb[3]);
+                r = build(mid, end, rightBranchStart, rMinX, rMinY, rMaxX, rMaxY);
+            }
+
+            left[myNode] = l;
+            right[myNode] = r;
+            parent[l] = myNode;
+            parent[r] = myNode;
+
+            lowerBoundX[myNode] = Math.min(lowerBoundX[l], lowerBoundX[r]);
+            lowerBoundY[myNode] = Math.min(lowerBoundY[l], lowerBoundY[r]);
+            upperBoundX[myNode] = Math.max(upperBoundX[l], upperBoundX[r]);
+            upperBoundY[myNode] = Math.max(upperBoundY[l], upperBoundY[r]);
+            height[myNode] = 1 + Math.max(height[l], height[r]);
+
+            return myNode;
+        }
+
+        // Partition leaves at the cheapest binned split and return the index of the first right leaf
+        private int split(int start, int end, float minX, float minY, float maxX, float maxY){
+
+            int count = end - start;
+            int bins = Math.min(BUILD_BINS, count);
+
+            // A zero scale puts every leaf in the first bin, so an axis with no extent finds no split
+            float scaleX = maxX > minX ? bins / (maxX - minX) : 0;
+            float scaleY = maxY > minY ? bins / (maxY - minY) : 0;
+
+            Arrays.fill(binCount, 0, BUILD_BINS + bins, 0);
+
+            for(int b = 0; b < BUILD_BINS + bins; b++){
+                binBounds[b * 4] = binBounds[b * 4 + 1] = Float.POSITIVE_INFINITY;
+                binBounds[b * 4 + 2] = binBounds[b * 4 + 3] = Float.NEGATIVE_INFINITY;
+            }
+
+            // Fill the bins of both axes in one pass
+            for(int i = start; i < end; i++){
+                int bx = Math.min((int)((buildLowerX[i] + buildUpperX[i] - minX) * scaleX), bins - 1) * 4;
+                int by = (BUILD_BINS + Math.min((int)((buildLowerY[i] + buildUpperY[i] - minY) * scaleY), bins - 1)) * 4;
+
+                binCount[bx >> 2]++;
+                binBounds[bx] = Math.min(binBounds[bx], buildLowerX[i]);
+                binBounds[bx + 1] = Math.min(binBounds[bx + 1], buildLowerY[i]);
+                binBounds[bx + 2] = Math.max(binBounds[bx + 2], buildUpperX[i]);
+                binBounds[bx + 3] = Math.max(binBounds[bx + 3], buildUpperY[i]);
+
+                binCount[by >> 2]++;
+                binBounds[by] = Math.min(binBounds[by], buildLowerX[i]);
+                binBounds[by + 1] = Math.min(binBounds[by + 1], buildLowerY[i]);
+                binBounds[by + 2] = Math.max(binBounds[by + 2], buildUpperX[i]);
+                binBounds[by + 3] = Math.max(binBounds[by + 3], buildUpperY[i]);
+            }
+
+            float bestCost = Float.POSITIVE_INFINITY;
+            int bestAxis = -1;
+            int bestBin = 0;
+
+            for(int axis = 0; axis < 2; axis++){
+                int first = axis * BUILD_BINS;
+
+                // Sweep from the right, storing the cost of everything right of each split
+                float lx = Float.POSITIVE_INFINITY, ly = Float.POSITIVE_INFINITY;
+                float ux = Float.NEGATIVE_INFINITY, uy = Float.NEGATIVE_INFINITY;
+                int n = 0;
+
+                for(int b = bins - 1; b > 0; b--){
+                    int i = (first + b) * 4;
+                    lx = Math.min(lx, binBounds[i]);
+                    ly = Math.min(ly, binBounds[i + 1]);
+                    ux = Math.max(ux, binBounds[i + 2]);
+                    uy = Math.max(uy, binBounds[i + 3]);
+                    n += binCount[first + b];
+                    rightCost[b] = n == 0 ? 0 : n * ((ux - lx) + (uy - ly));
+                }
+
+                // Sweep from the left, evaluating the split before each bin
+                lx = ly = Float.POSITIVE_INFINITY;
+                ux = uy = Float.NEGATIVE_INFINITY;
+                n = 0;
+
+                for(int b = 1; b < bins; b++){
+                    int i = (first + b - 1) * 4;
+                    lx = Math.min(lx, binBounds[i]);
+                    ly = Math.min(ly, binBounds[i + 1]);
+                    ux = Math.max(ux, binBounds[i + 2]);
+                    uy = Math.max(uy, binBounds[i + 3]);
+                    n += binCount[first + b - 1];
+
+                    // Both sides need leaves
+                    if(n == 0 || n == count)
+                        continue;
+
+                    float cost = n * ((ux - lx) + (uy - ly)) + rightCost[b];
+
+                    if(cost < bestCost){
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestBin = b;
+                    }
+                }
+            }
+
+            // All centroids in one spot, split in the middle
+            if(bestAxis == -1){
+                for(int i = 0; i < 8; i += 4){
+                    splitBounds[i] = minX;
+                    splitBounds[i + 1] = minY;
+                    splitBounds[i + 2] = maxX;
+                    splitBounds[i + 3] = maxY;
+                }
+                return (start + end) >>> 1;
+            }
+
+            float min = bestAxis == 0 ? minX : minY;
+            float scale = bestAxis == 0 ? scaleX : scaleY;
+
+            // Move leaves left of the split to the front, tracking the centroid bounds of both sides
+            float lMinX = Float.POSITIVE_INFINITY, lMinY = Float.POSITIVE_INFINITY;
+            float lMaxX = Float.NEGATIVE_INFINITY, lMaxY = Float.NEGATIVE_INFINITY;
+            float rMinX = Float.POSITIVE_INFINITY, rMinY = Float.POSITIVE_INFINITY;
+            float rMaxX = Float.NEGATIVE_INFINITY, rMaxY = Float.NEGATIVE_INFINITY;
+
+            int i = start;
+            int j = end - 1;
+
+            while(i <= j){
+                float cx = buildLowerX[i] + buildUpperX[i];
+                float cy = buildLowerY[i] + buildUpperY[i];
+
+                if(Math.min((int)(((bestAxis == 0 ? cx : cy) - min) * scale), bins - 1) < bestBin){
+                    lMinX = Math.min(lMinX, cx);
+                    lMinY = Math.min(lMinY, cy);
+                    lMaxX = Math.max(lMaxX, cx);
+                    lMaxY = Math.max(lMaxY, cy);
+                    i++;
+                }
+                else{
+                    rMinX = Math.min(rMinX, cx);
+                    rMinY = Math.min(rMinY, cy);
+                    rMaxX = Math.max(rMaxX, cx);
+                    rMaxY = Math.max(rMaxY, cy);
+                    swap(i, j);
+                    j--;
+                }
+            }
+
+            splitBounds[0] = lMinX;
+            splitBounds[1] = lMinY;
+            splitBounds[2] = lMaxX;
+            splitBounds[3] = lMaxY;
+            splitBounds[4] = rMinX;
+            splitBounds[5] = rMinY;
+            splitBounds[6] = rMaxX;
+            splitBounds[7] = rMaxY;
+
+            return i;
+        }
+
+        private void swap(int i, int j){
+            int leaf = buildLeaves[i];
+            buildLeaves[i] = buildLeaves[j];
+            buildLeaves[j] = leaf;
+
+            float f = buildLowerX[i];
+            buildLowerX[i] = buildLowerX[j];
+            buildLowerX[j] = f;
+
+            f = buildLowerY[i];
+            buildLowerY[i] = buildLowerY[j];
+            buildLowerY[j] = f;
+
+            f = buildUpperX[i];
+            buildUpperX[i] = buildUpperX[j];
+            buildUpperX[j] = f;
+
+            f = buildUpperY[i];
+            buildUpperY[i] = buildUpperY[j];
+            buildUpperY[j] = f;
+        }
+    }
+
+    // Build subtrees of large rebuilds on multiple threads
+    public void setParallelBuild(boolean parallelBuild){
+        this.parallelBuild = parallelBuild;
+    }
+
+    // Margin added to every side of a leaf, applies to leaves inserted from now on
+    public void setMinMargin(float minMargin){
+        this.minMargin = minMargin;
+    }
+
+    // Frames of predicted motion added to a leaf in the direction of its collider's velocity
+    // More frames mean fewer reinsertions but fatter leaves and more overlap tests
+    public void setMarginFrames(float marginFrames){
+        this.marginFrames = marginFrames;
+    }
+
+    public float getMinMargin(){
+        return minMargin;
+    }
+
+    public float getMarginFrames(){
+        return marginFrames;
+    }
+
+    // Must be called before the collider is removed from the store, since the store then moves the last
+    // collider into its id and the leaf of that collider is given the new id here
+    public void remove(Collider myCollider) {
+
+        int id = myCollider.getId();
+        int myNode = getLeaf(id);
+
+        if(myNode == NULL_NODE)
+            return;
+
+        removeNode(myNode);
+        freeNode(myNode);
+        leafOf[id] = NULL_NODE;
+        leafCount--;
+
+        // Follow the store moving the last collider into the removed id
+        int last = colliders.size() - 1;
+        int lastNode = getLeaf(last);
+
+        if(id != last && lastNode != NULL_NODE){
+            setLeaf(id, lastNode);
+            leafOf[last] = NULL_NODE;
+        }
+    }
+
+    // Remove the leaves of the last count colliders in the store in one pass, before they are removed from
+    // the store. Large batches free the leaves and rebuild the tree, small ones are removed one at a time
+    public void removeLast(int count){
+
+        int first = colliders.size() - count;
+
+        if(count < leafCount * REBUILD_FRACTION){
+            for(int id = first; id < colliders.size(); id++){
+                int myNode = getLeaf(id);
+
+                if(myNode != NULL_NODE){
+                    removeNode(myNode);
+                    freeNode(myNode);
+                    leafOf[id] = NULL_NODE;
+                    leafCount--;
+                }
+            }
+            return;
+        }
+
+        for(int id = first; id < colliders.size(); id++){
+            int myNode = getLeaf(id);
+
+            if(myNode != NULL_NODE){
+                freeNode(myNode);
+                leafOf[id] = NULL_NODE;
+                leafCount--;
+            }
+        }
+
+        // Branches still link the freed leaves, the rebuild frees them all
+        rebuild();
+    }
+
+    // Refresh the leaf of a single collider after it moved, reinserting it if it left its margin
+    public void move(Collider myCollider){
+
+        int id = myCollider.getId();
+        int myNode = getLeaf(id);
+
+        if(myNode == NULL_NODE)
+            return;
+
+        if(		colliders.lowerBoundX[id] < lowerBoundX[myNode] ||
+                colliders.lowerBoundY[id] < lowerBoundY[myNode] ||
+                colliders.upperBoundX[id] > upperBoundX[myNode] ||
+                colliders.upperBoundY[id] > upperBoundY[myNode]){
+
+            removeNode(myNode);
+            setMarginAABB(myNode);
+            addNode(myNode);
+        }
+    }
+
+    // Add the colliders whose AABB overlaps a region to the output
+    public void queryRegion(float minX, float minY, float maxX, float maxY, IdBuffer out){
+
+        if(treeRoot == NULL_NODE)
+            return;
+
+        int stackSize = 0;
+        queryStack[stackSize++] = treeRoot;
+
+        while(stackSize > 0){
+            int node = queryStack[--stackSize];
+
+            if(	lowerBoundX[node] > maxX || lowerBoundY[node] > maxY ||
+                minX > upperBoundX[node] || minY > upperBoundY[node])
+                continue;
+
+            if(isLeaf(node)){
+                int id = collider[node];
+
+                if(	colliders.lowerBoundX[id] <= maxX && colliders.lowerBoundY[id] <= maxY &&
+                    minX <= colliders.upperBoundX[id] && minY <= colliders.upperBoundY[id])
+                    out.add(id);
+                continue;
+            }
+
+            if(stackSize + 2 > queryStack.length)
+                queryStack = Arrays.copyOf(queryStack, queryStack.length * 2);
+
+            queryStack[stackSize++] = left[node];
+            queryStack[stackSize++] = right[node];
+        }
+    }
+
+    // Add the colliders containing a point to the output
+    public void queryPoint(float x, float y, IdBuffer out){
+        queryRegion(x, y, x, y, out);
+    }
+
+    // Id of the first collider hit by a ray within maxDistance, or -1
+    // The direction should be normalized, the distance to the hit is then given by getRayDistance()
+    public int raycast(float originX, float originY, float dirX, float dirY, float maxDistance){
+
+        rayDistance = maxDistance;
+
+        if(treeRoot == NULL_NODE)
+            return -1;
+
+        float invDirX = 1 / dirX;
+        float invDirY = 1 / dirY;
+        int hit = -1;
+
+        int stackSize = 0;
+        queryStack[stackSize++] = treeRoot;
+
+        while(stackSize > 0){
+            int node = queryStack[--stackSize];
+
+            // Skip nodes the ray misses or enters beyond the closest hit so far
+            // A miss is infinite, so it has to be checked on its own for an unbounded ray
+            float entry = rayEntry(lowerBoundX[node], lowerBoundY[node], upperBoundX[node], upperBoundY[node],
+                    originX, originY, invDirX, invDirY);
+
+            if(entry == Float.POSITIVE_INFINITY || entry > rayDistance)
+                continue;
+
+            if(isLeaf(node)){
+                int id = collider[node];
+                float t = rayEntry(colliders.lowerBoundX[id], colliders.lowerBoundY[id], colliders.upperBoundX[id],
+                        colliders.upperBoundY[id], originX, originY, invDirX, invDirY);
+
+                if(t != Float.POSITIVE_INFINITY && t <= rayDistance){
+                    rayDistance = t;
+                    hit = id;
+                }
+                continue;
+            }
+
+            if(stackSize + 2 > queryStack.length)
+                queryStack = Arrays.copyOf(queryStack, queryStack.length * 2);
+
+            // Visit the child the ray enters first next, so later nodes are pruned by its hits
+            int near = left[node];
+            int far = right[node];
+
+            if(	rayEntry(lowerBoundX[far], lowerBoundY[far], upperBoundX[far], upperBoundY[far], originX, originY, invDirX, invDirY) <
+                rayEntry(lowerBoundX[near], lowerBoundY[near], upperBoundX[near], upperBoundY[near], originX, originY, invDirX, invDirY)){
+                near = right[node];
+                far = left[node];
+            }
+
+            queryStack[stackSize++] = far;
+            queryStack[stackSize++] = near;
+        }
+
+        return hit;
+    }
+
+    // Distance along the ray to the last raycast() hit, or its maxDistance if nothing was hit
+    public float getRayDistance(){
+        return rayDistance;
+    }
+
+    // Add the k colliders nearest to a point to the output, nearest first
+    // Distance is measured to the collider's AABB, so colliders containing the point are at distance 0
+    public void queryNearest(float x, float y, int k, IdBuffer out){
+
+        if(treeRoot == NULL_NODE || k <= 0)
+            return;
+
+        if(nearestIds.length < k){
+            nearestIds = new int[k];
+            nearestDist = new float[k];
+        }
+
+        // Nodes are visited closest first from a min heap, the k best colliders are kept in a max heap
+        int heapSize = 0;
+        int bestCount = 0;
+
+        heapSize = heapPush(treeRoot, distanceSquared(lowerBoundX[treeRoot], lowerBoundY[treeRoot],
+                upperBoundX[treeRoot], upperBoundY[treeRoot], x, y), heapSize);
+
+        while(heapSize > 0){
+            int node = nodeHeap[0];
+            float dist = nodeHeapDist[0];
+            heapSize = heapPop(nodeHeap, nodeHeapDist, heapSize, 1);
+
+            // All remaining nodes are farther than the k-th best collider
+            if(bestCount == k && dist >= nearestDist[0])
+                break;
+
+            if(isLeaf(node)){
+                int id = collider[node];
+                dist = distanceSquared(colliders.lowerBoundX[id], colliders.lowerBoundY[id], colliders.upperBoundX[id],
+                        colliders.upperBoundY[id], x, y);
+
+                if(bestCount < k){
+                    nearestIds[bestCount] = id;
+                    nearestDist[bestCount] = dist;
+                    siftUp(nearestIds, nearestDist, bestCount++, -1);
+                }
+                else if(dist < nearestDist[0]){
+                    nearestIds[0] = id;
+                    nearestDist[0] = dist;
+                    siftDown(nearestIds, nearestDist, bestCount, 0, -1);
+                }
+                continue;
+            }
+
+            int child1 = left[node];
+            int child2 = right[node];
+
+            heapSize = heapPush(child1, distanceSquared(lowerBoundX[child1], lowerBoundY[child1], upperBoundX[child1],
+                    upperBoundY[child1], x, y), heapSize);
+            heapSize = heapPush(child2, distanceSquared(lowerBoundX[child2], lowerBoundY[child2], upperBoundX[child2],
+                    upperBoundY[child2], x, y), heapSize);
+        }
+
+        // Empty the max heap from the back to sort nearest first
+        for(int i = bestCount - 1; i > 0; i--){
+            int id = nearestIds[0];
+            float dist = nearestDist[0];
+            nearestIds[0] = nearestIds[i];
+            nearestDist[0] = nearestDist[i];
+            nearestIds[i] = id;
+            nearestDist[i] = dist;
+            siftDown(nearestIds, nearestDist, i, 0, -1);
+        }
+
+        for(int i = 0; i < bestCount; i++)
+            out.add(nearestIds[i]);
+    }
+
+    // Distance along a ray to where it enters an AABB, 0 if the origin is inside, infinity if it misses
+    private static float rayEntry(float lowerX, float lowerY, float upperX, float upperY,
+            float originX, float originY, float invDirX, float invDirY){
+
+        float tMin = 0;
+        float tMax = Float.POSITIVE_INFINITY;
+
+        // A ray parallel to an axis must start between the planes on that axis
+        if(Float.isInfinite(invDirX)){
+            if(originX < lowerX || originX > upperX)
+                return Float.POSITIVE_INFINITY;
+        }
+        else{
+            float t1 = (lowerX - originX) * invDirX;
+            float t2 = (upperX - originX) * invDirX;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+
+        if(Float.isInfinite(invDirY)){
+            if(originY < lowerY || originY > upperY)
+                return Float.POSITIVE_INFINITY;
+        }
+        else{
+            float t1 = (lowerY - originY) * invDirY;
+            float t2 = (upperY - originY) * invDirY;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+
+        return tMin <= tMax ? tMin : Float.POSITIVE_INFINITY;
+    }
+
+    // Squared distance from a point to an AABB
+    private static float distanceSquared(float lowerX, float lowerY, float upperX, float upperY, float x, float y){
+        float dx = Math.max(Math.max(lowerX - x, x - upperX), 0);
+        float dy = Math.max(Math.max(lowerY - y, y - upperY), 0);
+        return dx * dx + dy * dy;
+    }
+
+    // Push a node onto the nearest query's node heap, returning the new size
+    private int heapPush(int node, float dist, int count){
+
+        if(count == nodeHeap.length){
+            nodeHeap = Arrays.copyOf(nodeHeap, count * 2);
+            nodeHeapDist = Arrays.copyOf(nodeHeapDist, count * 2);
+        }
+
+        nodeHeap[count] = node;
+        nodeHeapDist[count] = dist;
+        siftUp(nodeHeap, nodeHeapDist, count, 1);
+        return count + 1;
+    }
+
+    // Remove the top of a heap, returning the new size
+    private static int heapPop(int[] ids, float[] keys, int count, float sign){
+        count--;
+        ids[0] = ids[count];
+        keys[0] = keys[count];
+        siftDown(ids, keys, count, 0, sign);
+        return count;
+    }
+
+    // Binary heap ordered by sign * key, a sign of 1 keeps the smallest key on top and -1 the largest
+    private static void siftUp(int[] ids, float[] keys, int i, float sign){
+        int id = ids[i];
+        float key = keys[i];
+
+        while(i > 0){
+            int up = (i - 1) >> 1;
+
+            if(sign * keys[up] <= sign * key)
+                break;
+
+            ids[i] = ids[up];
+            keys[i] = keys[up];
+            i = up;
+        }
+
+        ids[i] = id;
+        keys[i] = key;
+    }
+
+    private static void siftDown(int[] ids, float[] keys, int count, int i, float sign){
+        int id = ids[i];
+        float key = keys[i];
+
+        while(true){
+            int child = i * 2 + 1;
+
+            if(child >= count)
+                break;
+
+            if(child + 1 < count && sign * keys[child + 1] < sign * keys[child])
+                child++;
+
+            if(sign * key <= sign * keys[child])
+                break;
+
+            ids[i] = ids[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+
+        ids[i] = id;
+        keys[i] = key;
+    }
+
+    // Leaf node of a collider, or NULL_NODE
+    public int getLeaf(int id){
+        return id < leafOf.length ? leafOf[id] : NULL_NODE;
+    }
+
+    private void setLeaf(int id, int myNode){
+
+        if(id >= leafOf.length){
+            int oldLength = leafOf.length;
+            leafOf = Arrays.copyOf(leafOf, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(leafOf, oldLength, leafOf.length, NULL_NODE);
+        }
+
+        leafOf[id] = myNode;
+        collider[myNode] = id;
+    }
+
+    private boolean isOverlapping(int node1, int node2){
+        if(	lowerBoundX[node1] > upperBoundX[node2] || lowerBoundY[node1] > upperBoundY[node2] ||
+            lowerBoundX[node2] > upperBoundX[node1] || lowerBoundY[node2] > upperBoundY[node1])
+            return false;
+
+        return true;
+    }
+
+    private float area(int node){
+        return (upperBoundX[node] - lowerBoundX[node]) * (upperBoundY[node] - lowerBoundY[node]);
+    }
+
+    private float perimeter(int node){
+        return 2 * ((upperBoundX[node] - lowerBoundX[node]) + (upperBoundY[node] - lowerBoundY[node]));
+    }
+
+    private float unionPerimeter(int node1, int node2){
+        return 2 * ((Math.max(upperBoundX[node1], upperBoundX[node2]) - Math.min(lowerBoundX[node1], lowerBoundX[node2]))
+                + (Math.max(upperBoundY[node1], upperBoundY[node2]) - Math.min(lowerBoundY[node1], lowerBoundY[node2])));
+    }
+
+    // Longest path from the root to a leaf
+    public int getHeight(){
+        return treeRoot == NULL_NODE ? 0 : height[treeRoot];
+    }
+
+    // Sum of all node perimeters relative to the root's, the expected number of nodes a query visits
+    public float getSAHCost(){
+
+        if(treeRoot == NULL_NODE)
+            return 0;
+
+        float total = 0;
+
+        for(int i = 0; i < nodeCapacity; i++)
+            if(height[i] >= 0)
+                total += perimeter(i);
+
+        return total / perimeter(treeRoot);
+    }
+
+    public int getRoot(){
+    	return treeRoot;
+    }
+
+    public boolean isLeaf(int node){
+        return left[node] == NULL_NODE;
+    }
+
+    public int getLeft(int node){
+        return left[node];
+    }
+
+    public int getRight(int node){
+        return right[node];
+    }
+
+    // Copy a node's bounds into an AABB
+    public void getAABB(int node, AABB aabb){
+        aabb.lowerBoundX = lowerBoundX[node];
+        aabb.lowerBoundY = lowerBoundY[node];
+        aabb.upperBoundX = upperBoundX[node];
+        aabb.upperBoundY = upperBoundY[node];
+    }
+
+    public int getNodeCount(){
+        return nodeCount;
+    }
+
+    public int getLeafCount(){
+        return leafCount;
+    }
+
+    // Growable stack of node pairs
+    private static class PairStack{
+
+        int[] a = new int[DEFAULT_CAPACITY];
+        int[] b = new int[DEFAULT_CAPACITY];
+        int size;
+
+        void push(int node1, int node2){
+
+            if(size == a.length){
+                a = Arrays.copyOf(a, size * 2);
+                b = Arrays.copyOf(b, size * 2);
+            }
+
+            a[size] = node1;
+            b[size] = node2;
+            size++;
+        }
+    }
+}
@@ -1,38 +1,111 @@
-package main;
-
-import java.util.ArrayList;
-
-/**
- * CCBruteForce.java
- * 
- * Brute-force collision checking algorithm.
- * 
- * @author Daniel
- *
- */
-public class CCBruteForce extends CollisionChecker{
-
-	public CCBruteForce(ArrayList<Collider> colliders){
-		super(colliders);
-	}
-
-	public ArrayList<Collision> checkCollisions(){
-		
-		ArrayList<Collision> collisions = new ArrayList<Collision>();
-		
-		// Iterate all collider pairs
-		for(int i = 0; i < colliders.size() - 1; i++){
-			for(int j = i + 1; j < colliders.size(); j++){
-				
-				Collider c1 = colliders.get(i);
-				Collider c2 = colliders.get(j);
-				
-				// Check AABB overlap and add collision if overlapping
-				if(c1.getAABB().isOverlapping(c2.getAABB()))
-					collisions.add(new Collision(c1, c2));
-			}
-		}
-		
-		return collisions;
-	}
-}
+package main;
+
+/**
+ * CCBruteForce.java
+ * 
+ * Brute-force collision checking algorithm.
+ * 
+ * Parallel mode splits the triangular pair space into square tiles of colliders, which are tested on a
+ * ForkJoinPool. The output contains the same pairs as the serial mode, in a different order.
+ * 
+ * @author Daniel
+ *
+ */
+public class CCBruteForce extends CollisionChecker{
+	
+	public static final int MODE_SERIAL = 0;
+	public static final int MODE_PARALLEL = 1;
+	
+	// Colliders per tile side, so both sides of a tile stay in L1 cache
+	private static final int TILE_SIZE = 256;
+	
+	private final ParallelPairKernel kernel;
+	
+	// Row and column of each tile in the upper triangle, ordered by row
+	private int[] tileRow, tileColumn;
+	private int tileCount;
+	private int tiledColliders = -1;
+	
+	private final ParallelPairKernel.Job tileJob = this::checkTiles;
+	
+	
+	public CCBruteForce(ColliderStore colliders){
+		this(colliders, new ParallelPairKernel());
+	}
+	
+	public CCBruteForce(ColliderStore colliders, ParallelPairKernel kernel){
+		super(colliders, "Serial", "Parallel");
+		this.kernel = kernel;
+		
+		tileRow = new int[0];
+		tileColumn = new int[0];
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		if(mode == MODE_PARALLEL){
+			updateTiles();
+			kernel.run(tileCount, tileJob, pairs);
+			return;
+		}
+		
+		int count = colliders.size();
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		
+		// Iterate all collider pairs
+		for(int i = 0; i < count - 1; i++){
+			for(int j = i + 1; j < count; j++){
+				
+				// Check AABB overlap and add collision if overlapping
+				if(	lowerBoundX[i] > upperBoundX[j] || lowerBoundY[i] > upperBoundY[j] ||
+					lowerBoundX[j] > upperBoundX[i] || lowerBoundY[j] > upperBoundY[i])
+					continue;
+				
+				pairs.add(i, j);
+			}
+		}
+	}
+	
+	// Rebuild the tile list when the collider count changes
+	private void updateTiles(){
+		
+		if(tiledColliders == colliders.size())
+			return;
+		
+		tiledColliders = colliders.size();
+		
+		int side = (tiledColliders + TILE_SIZE - 1) / TILE_SIZE;
+		tileCount = side * (side + 1) / 2;
+		
+		if(tileRow.length < tileCount){
+			tileRow = new int[tileCount];
+			tileColumn = new int[tileCount];
+		}
+		
+		int tile = 0;
+		
+		for(int row = 0; row < side; row++){
+			for(int column = row; column < side; column++){
+				tileRow[tile] = row;
+				tileColumn[tile] = column;
+				tile++;
+			}
+		}
+	}
+	
+	// Test all pairs in a range of tiles
+	private void checkTiles(int start, int end, PairBuffer pairs){
+		
+		int count = colliders.size();
+		
+		for(int tile = start; tile < end; tile++){
+			int startA = tileRow[tile] * TILE_SIZE;
+			int startB = tileColumn[tile] * TILE_SIZE;
+			
+			ParallelPairKernel.testTile(colliders, startA, Math.min(startA + TILE_SIZE, count), startB, Math.min(startB + TILE_SIZE, count), pairs);
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * CCCellList.java
+ *
+ * Cell list collision checking algorithm, as used by particle simulations. The grid covers the bounds of all
+ * collider centers with cells at least as large as the largest collider, so two overlapping colliders are always
+ * in the same or neighboring cells.
+ *
+ * Every frame each collider gets the key of the cell containing its center, row by row, and the colliders are
+ * counting sorted by key. The sort is stable and made of passes over 8-bit digits of the key, each pass counting
+ * digits per chunk and scattering through the prefix sums of those counts. The start of every cell in sorted order
+ * is then written to a flat array, so no hash maps or per-cell lists are needed. Each collider is tested against
+ * the colliders after it in its own cell and the next cell on its row, and the three cells below it, which are
+ * both contiguous ranges in sorted order.
+ *
+ * In parallel mode every step is split across a ForkJoinPool. The output is the same in both modes and every run.
+ *
+ * @author Daniel
+ *
+ */
+public class CCCellList extends CollisionChecker{
+	
+	public static final int MODE_SERIAL = 0;
+	public static final int MODE_PARALLEL = 1;
+	
+	// Bits sorted per counting sort pass
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	
+	// Cells are kept slightly larger than the largest collider so rounding of the centers
+	// cannot put an overlapping pair more than one cell apart
+	private static final float CELL_SLACK = 1.01f;
+	
+	// Cells are enlarged for sparse scenes so the cell array stays proportional to the collider count
+	private static final int MAX_CELLS_PER_COLLIDER = 4;
+	
+	// Chunks per pool thread for the build steps
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	// Steps of the build, run for each chunk of items
+	private static final int STEP_BOUNDS = 0;
+	private static final int STEP_KEYS = 1;
+	private static final int STEP_HISTOGRAM = 2;
+	private static final int STEP_SCATTER = 3;
+	private static final int STEP_GATHER = 4;
+	private static final int STEP_CELLS = 5;
+	
+	private final ForkJoinPool pool;
+	private final ParallelPairKernel kernel;
+	
+	// Smallest cell size, cells grow to fit the largest collider
+	private final float minCellSize;
+	
+	// Cell key and collider id of each collider, sorted by key, and the sort buffers
+	private int[] keys, sortedIds;
+	private int[] tempKeys, tempIds;
+	
+	// Digit counts of each chunk in the current pass, turned into scatter offsets
+	private int[] histograms;
+	private int radixShift;
+	
+	// Collider bounds in sorted order
+	private float[] lowerBoundX, lowerBoundY;
+	private float[] upperBoundX, upperBoundY;
+	
+	// First sorted index of each cell, cellStart[cellCount] is the collider count
+	private int[] cellStart;
+	
+	// Center bounds and largest collider size of each chunk
+	private float[] chunkMinX, chunkMinY, chunkMaxX, chunkMaxY, chunkMaxSize;
+	
+	// Grid over the collider centers
+	private float minX, minY, cellSize;
+	private int gridWidth, gridHeight, cellCount;
+	
+	private int count;
+	private int chunks;
+	
+	private final ParallelPairKernel.Job scanJob = this::scanColliders;
+	
+	
+	public CCCellList(ColliderStore colliders, float minCellSize){
+		this(colliders, minCellSize, ForkJoinPool.commonPool());
+	}
+	
+	public CCCellList(ColliderStore colliders, float minCellSize, ForkJoinPool pool){
+		super(colliders, "Serial", "Parallel");
+		this.minCellSize = minCellSize;
+		this.pool = pool;
+		kernel = new ParallelPairKernel(pool);
+		
+		keys = sortedIds = tempKeys = tempIds = new int[0];
+		histograms = new int[0];
+		lowerBoundX = lowerBoundY = upperBoundX = upperBoundY = new float[0];
+		cellStart = new int[0];
+		chunkMinX = chunkMinY = chunkMaxX = chunkMaxY = chunkMaxSize = new float[0];
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		build();
+		
+		if(count < 2)
+			return;
+		
+		if(mode == MODE_PARALLEL)
+			kernel.run(count, scanJob, pairs);
+		else
+			scanColliders(0, count, pairs);
+	}
+	
+	// Sort the colliders by cell and find the start of every cell
+	private void build(){
+		
+		count = colliders.size();
+		
+		if(count == 0)
+			return;
+		
+		ensureCapacity(count);
+		
+		chunks = mode == MODE_PARALLEL ? Math.min(count, pool.getParallelism() * CHUNKS_PER_THREAD) : 1;
+		
+		if(histograms.length < chunks * RADIX){
+			histograms = new int[chunks * RADIX];
+			chunkMinX = new float[chunks];
+			chunkMinY = new float[chunks];
+			chunkMaxX = new float[chunks];
+			chunkMaxY = new float[chunks];
+			chunkMaxSize = new float[chunks];
+		}
+		
+		runStep(STEP_BOUNDS);
+		createGrid();
+		runStep(STEP_KEYS);
+		
+		// Sort keys, each pass is stable so the order of earlier digits is kept
+		// Passes are counted up front, shifting by 32 would wrap around to a shift of 0
+		int keyBits = 32 - Integer.numberOfLeadingZeros(cellCount - 1);
+		
+		for(radixShift = 0; radixShift < keyBits; radixShift += RADIX_BITS){
+			runStep(STEP_HISTOGRAM);
+			prefixHistograms();
+			runStep(STEP_SCATTER);
+			
+			int[] swap = keys;
+			keys = tempKeys;
+			tempKeys = swap;
+			
+			swap = sortedIds;
+			sortedIds = tempIds;
+			tempIds = swap;
+		}
+		
+		if(cellStart.length < cellCount + 1)
+			cellStart = new int[Math.max(cellCount + 1, cellStart.length * 2)];
+		
+		runStep(STEP_GATHER);
+		runStep(STEP_CELLS);
+	}
+	
+	private void ensureCapacity(int count){
+		
+		if(keys.length >= count)
+			return;
+		
+		int capacity = Math.max(count, keys.length * 2);
+		
+		keys = new int[capacity];
+		sortedIds = new int[capacity];
+		tempKeys = new int[capacity];
+		tempIds = new int[capacity];
+		
+		lowerBoundX = new float[capacity];
+		lowerBoundY = new float[capacity];
+		upperBoundX = new float[capacity];
+		upperBoundY = new float[capacity];
+	}
+	
+	// Combine the chunk bounds and size the grid
+	private void createGrid(){
+		
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxSize = 0;
+		minX = Float.POSITIVE_INFINITY;
+		minY = Float.POSITIVE_INFINITY;
+		
+		for(int i = 0; i < chunks; i++){
+			minX = Math.min(minX, chunkMinX[i]);
+			minY = Math.min(minY, chunkMinY[i]);
+			maxX = Math.max(maxX, chunkMaxX[i]);
+			maxY = Math.max(maxY, chunkMaxY[i]);
+			maxSize = Math.max(maxSize, chunkMaxSize[i]);
+		}
+		
+		cellSize = Math.max(minCellSize, maxSize * CELL_SLACK);
+		
+		// Enlarge cells until there are few enough of them
+		long maxCells = (long)count * MAX_CELLS_PER_COLLIDER;
+		
+		while(true){
+			gridWidth = (int)((maxX - minX) / cellSize) + 1;
+			gridHeight = (int)((maxY - minY) / cellSize) + 1;
+			
+			if((long)gridWidth * gridHeight <= maxCells)
+				break;
+			
+			cellSize *= Math.max((float)Math.sqrt((double)gridWidth * gridHeight / maxCells), 1.01f);
+		}
+		
+		cellCount = gridWidth * gridHeight;
+	}
+	
+	// Run a build step over all chunks, on the pool in parallel mode
+	private void runStep(int step){
+		
+		if(chunks == 1)
+			runChunk(step, 0);
+		else
+			pool.invoke(new StepTask(step, 0, chunks));
+	}
+	
+	private void runChunk(int step, int chunk){
+		
+		int start = (int)((long)count * chunk / chunks);
+		int end = (int)((long)count * (chunk + 1) / chunks);
+		
+		switch(step){
+		case STEP_BOUNDS:		computeBounds(chunk, start, end);		break;
+		case STEP_KEYS:			computeKeys(start, end);				break;
+		case STEP_HISTOGRAM:	countDigits(chunk, start, end);			break;
+		case STEP_SCATTER:		scatter(chunk, start, end);				break;
+		case STEP_GATHER:		gatherBounds(start, end);				break;
+		case STEP_CELLS:		findCellStarts(start, end);				break;
+		}
+	}
+	
+	private void computeBounds(int chunk, int start, int end){
+		
+		float[] x = colliders.x;
+		float[] y = colliders.y;
+		
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		float maxSize = 0;
+		
+		for(int i = start; i < end; i++){
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+			maxSize = Math.max(maxSize, Math.max(colliders.upperBoundX[i] - colliders.lowerBoundX[i], colliders.upperBoundY[i] - colliders.lowerBoundY[i]));
+		}
+		
+		chunkMinX[chunk] = minX;
+		chunkMinY[chunk] = minY;
+		chunkMaxX[chunk] = maxX;
+		chunkMaxY[chunk] = maxY;
+		chunkMaxSize[chunk] = maxSize;
+	}
+	
+	private void computeKeys(int start, int end){
+		for(int i = start; i < end; i++){
+			int cx = Math.min((int)((colliders.x[i] - minX) / cellSize), gridWidth - 1);
+			int cy = Math.min((int)((colliders.y[i] - minY) / cellSize), gridHeight - 1);
+			
+			keys[i] = cy * gridWidth + cx;
+			sortedIds[i] = i;
+		}
+	}
+	
+	private void countDigits(int chunk, int start, int end){
+		
+		int base = chunk * RADIX;
+		Arrays.fill(histograms, base, base + RADIX, 0);
+		
+		for(int i = start; i < end; i++)
+			histograms[base + ((keys[i] >>> radixShift) & (RADIX - 1))]++;
+	}
+	
+	// Turn the digit counts into the first output index of each digit in each chunk
+	// Digits are ordered first and chunks second, so equal digits keep their order
+	private void prefixHistograms(){
+		
+		int offset = 0;
+		
+		for(int digit = 0; digit < RADIX; digit++){
+			for(int chunk = 0; chunk < chunks; chunk++){
+				int count = histograms[chunk * RADIX + digit];
+				histograms[chunk * RADIX + digit] = offset;
+				offset += count;
+			}
+		}
+	}
+	
+	private void scatter(int chunk, int start, int end){
+		
+		int base = chunk * RADIX;
+		
+		for(int i = start; i < end; i++){
+			int slot = histograms[base + ((keys[i] >>> radixShift) & (RADIX - 1))]++;
+			tempKeys[slot] = keys[i];
+			tempIds[slot] = sortedIds[i];
+		}
+	}
+	
+	// Copy collider bounds into sorted order, so colliders in neighboring cells are adjacent in memory
+	private void gatherBounds(int start, int end){
+		for(int i = start; i < end; i++){
+			int id = sortedIds[i];
+			
+			lowerBoundX[i] = colliders.lowerBoundX[id];
+			lowerBoundY[i] = colliders.lowerBoundY[id];
+			upperBoundX[i] = colliders.upperBoundX[id];
+			upperBoundY[i] = colliders.upperBoundY[id];
+		}
+	}
+	
+	// Each sorted index is the start of the cells from the previous key up to its own
+	// Every cell is written by exactly one index, and the last chunk also fills the cells after the last key
+	private void findCellStarts(int start, int end){
+		
+		for(int i = start; i < end; i++)
+			for(int cell = i == 0 ? 0 : keys[i - 1] + 1; cell <= keys[i]; cell++)
+				cellStart[cell] = i;
+		
+		if(end == count)
+			for(int cell = keys[count - 1] + 1; cell <= cellCount; cell++)
+				cellStart[cell] = count;
+	}
+	
+	// Find the pairs of each collider in a range of sorted indices
+	private void scanColliders(int start, int end, PairBuffer pairs){
+		
+		for(int i = start; i < end; i++){
+			int key = keys[i];
+			int cx = key % gridWidth;
+			int cy = key / gridWidth;
+			
+			// Later colliders in the same cell and the next cell on the row
+			testRange(i, i + 1, cellStart[cx + 1 < gridWidth ? key + 2 : key + 1], pairs);
+			
+			// The three cells on the next row
+			if(cy + 1 < gridHeight){
+				int row = key + gridWidth;
+				testRange(i, cellStart[cx > 0 ? row - 1 : row], cellStart[cx + 1 < gridWidth ? row + 2 : row + 1], pairs);
+			}
+		}
+	}
+	
+	// Test a collider against the colliders in sorted range [first, last)
+	private void testRange(int i, int first, int last, PairBuffer pairs){
+		
+		float lx = lowerBoundX[i];
+		float ly = lowerBoundY[i];
+		float ux = upperBoundX[i];
+		float uy = upperBoundY[i];
+		
+		for(int j = first; j < last; j++){
+			if(	lx > upperBoundX[j] || ly > upperBoundY[j] ||
+				lowerBoundX[j] > ux || lowerBoundY[j] > uy)
+				continue;
+			
+			pairs.add(sortedIds[i], sortedIds[j]);
+		}
+	}
+	
+	public float getCellSize(){
+		return cellSize;
+	}
+	
+	// Splits a range of chunks in half until a single chunk is left
+	private class StepTask extends RecursiveAction{
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int step;
+		private final int first, last;
+		
+		StepTask(int step, int first, int last){
+			this.step = step;
+			this.first = first;
+			this.last = last;
+		}
+		
+		protected void compute(){
+			
+			if(last - first > 1){
+				int mid = (first + last) >>> 1;
+				invokeAll(new StepTask(step, first, mid), new StepTask(step, mid, last));
+				return;
+			}
+			
+			runChunk(step, first);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package main;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * CCContinuous.java
+ *
+ * Continuous collision checking, so colliders moving further than their size in one update cannot pass through
+ * each other unreported.
+ *
+ * The broadphase runs on a separate store of proxies, one per collider with the same id, whose AABBs are swept from
+ * the collider's position before its last update to its current position. Any collision checker that picks up added
+ * and removed colliders by itself can be used as the broadphase. Candidate pairs then get an exact time of impact
+ * for the two AABBs moving linearly over the step, and the pairs that touch are output sorted by it, earliest first.
+ *
+ * Pairs overlapping at the end of the step are always reported, so the output contains every pair a discrete
+ * checker finds.
+ *
+ * @author Daniel
+ *
+ */
+public class CCContinuous extends CollisionChecker{
+	
+	// Swept AABB of each collider
+	private final ColliderStore sweptColliders;
+	
+	private final CollisionChecker broadphase;
+	
+	// Pairs with overlapping swept AABBs
+	private final PairBuffer candidates;
+	
+	// Time of impact bits and candidate index of each touching pair, for sorting
+	private long[] sortKeys;
+	
+	// Time of impact of each pair in the last output
+	private float[] timesOfImpact;
+	private int pairCount;
+	
+	
+	public CCContinuous(ColliderStore colliders, Function<ColliderStore, CollisionChecker> broadphase){
+		super(colliders);
+		
+		sweptColliders = new ColliderStore(colliders.size());
+		this.broadphase = broadphase.apply(sweptColliders);
+		candidates = new PairBuffer();
+		
+		sortKeys = new long[0];
+		timesOfImpact = new float[0];
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		updateSweptColliders();
+		
+		candidates.clear();
+		broadphase.checkCollisions(candidates);
+		
+		if(sortKeys.length < candidates.size())
+			sortKeys = new long[Math.max(candidates.size(), sortKeys.length * 2)];
+		
+		// Times are in [0, 1], so their bits sort in the same order as the floats
+		int count = 0;
+		
+		for(int i = 0; i < candidates.size(); i++){
+			float time = findTimeOfImpact(candidates.getA(i), candidates.getB(i));
+			
+			if(time >= 0)
+				sortKeys[count++] = (long)Float.floatToIntBits(time) << 32 | i;
+		}
+		
+		Arrays.sort(sortKeys, 0, count);
+		
+		if(timesOfImpact.length < count)
+			timesOfImpact = new float[Math.max(count, timesOfImpact.length * 2)];
+		
+		for(int i = 0; i < count; i++){
+			int candidate = (int)sortKeys[i];
+			
+			pairs.add(candidates.getA(candidate), candidates.getB(candidate));
+			timesOfImpact[i] = Float.intBitsToFloat((int)(sortKeys[i] >>> 32));
+		}
+		
+		pairCount = count;
+	}
+	
+	// Match the proxies to the colliders and set their AABBs to the swept AABBs
+	private void updateSweptColliders(){
+		
+		int count = colliders.size();
+		
+		while(sweptColliders.size() < count)
+			sweptColliders.add(0, 0, 0, 0, 0);
+		
+		while(sweptColliders.size() > count)
+			sweptColliders.remove(sweptColliders.get(sweptColliders.size() - 1));
+		
+		for(int i = 0; i < count; i++){
+			float dx = colliders.x[i] - colliders.prevX[i];
+			float dy = colliders.y[i] - colliders.prevY[i];
+			
+			float lx = colliders.lowerBoundX[i] - Math.max(dx, 0);
+			float ly = colliders.lowerBoundY[i] - Math.max(dy, 0);
+			float ux = colliders.upperBoundX[i] - Math.min(dx, 0);
+			float uy = colliders.upperBoundY[i] - Math.min(dy, 0);
+			
+			sweptColliders.lowerBoundX[i] = lx;
+			sweptColliders.lowerBoundY[i] = ly;
+			sweptColliders.upperBoundX[i] = ux;
+			sweptColliders.upperBoundY[i] = uy;
+			sweptColliders.x[i] = (lx + ux) / 2;
+			sweptColliders.y[i] = (ly + uy) / 2;
+			sweptColliders.size[i] = Math.max(ux - lx, uy - ly);
+			sweptColliders.velX[i] = dx;
+			sweptColliders.velY[i] = dy;
+		}
+	}
+	
+	// First time in [0, 1] at which the AABBs of two colliders touch over the last step, -1 if they do not
+	private float findTimeOfImpact(int a, int b){
+		
+		// Displacements over the step, and of a relative to b
+		float dax = colliders.x[a] - colliders.prevX[a];
+		float day = colliders.y[a] - colliders.prevY[a];
+		float dbx = colliders.x[b] - colliders.prevX[b];
+		float dby = colliders.y[b] - colliders.prevY[b];
+		float vx = dax - dbx;
+		float vy = day - dby;
+		
+		float enter = 0;
+		float exit = 1;
+		
+		// Interval of times the AABBs overlap on x, both start at their position before the step
+		float aLower = colliders.lowerBoundX[a] - dax;
+		float aUpper = colliders.upperBoundX[a] - dax;
+		float bLower = colliders.lowerBoundX[b] - dbx;
+		float bUpper = colliders.upperBoundX[b] - dbx;
+		
+		if(vx == 0){
+			if(aLower > bUpper || bLower > aUpper)
+				return -1;
+		}
+		else{
+			float t1 = (bLower - aUpper) / vx;
+			float t2 = (bUpper - aLower) / vx;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		}
+		
+		// Same on y
+		aLower = colliders.lowerBoundY[a] - day;
+		aUpper = colliders.upperBoundY[a] - day;
+		bLower = colliders.lowerBoundY[b] - dby;
+		bUpper = colliders.upperBoundY[b] - dby;
+		
+		if(vy == 0){
+			if(aLower > bUpper || bLower > aUpper)
+				return -1;
+		}
+		else{
+			float t1 = (bLower - aUpper) / vy;
+			float t2 = (bUpper - aLower) / vy;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		}
+		
+		if(enter <= exit)
+			return enter;
+		
+		// Rounding can lose pairs that only touch at the end of the step
+		return colliders.isOverlapping(a, b) ? 1 : -1;
+	}
+	
+	// Time of impact of the i-th pair output by the last check, as a fraction of the step
+	public float getTimeOfImpact(int i){
+		return timesOfImpact[i];
+	}
+	
+	public int getPairCount(){
+		return pairCount;
+	}
+	
+	public CollisionChecker getBroadphase(){
+		return broadphase;
+	}
+	
+	// Variants are those of the broadphase
+	public void setMode(int mode){
+		broadphase.setMode(mode);
+	}
+	
+	public int getMode(){
+		return broadphase.getMode();
+	}
+	
+	public int getModeCount(){
+		return broadphase.getModeCount();
+	}
+	
+	public String getModeName(){
+		return broadphase.getModeName();
+	}
+}
@@ -0,0 +1,274 @@
+package main;
+
+/**
+ * CCHierarchicalGrid.java
+ *
+ * Hierarchical grid collision checking algorithm for colliders of mixed sizes.
+ *
+ * The grid has one level per power of two cell size, starting from a minimum cell size. Each collider is stored
+ * once, in the cell containing its center on the finest level whose cells are larger than the collider. Occupied
+ * cells of all levels share one hash table, which is rebuilt every frame.
+ *
+ * A collider is never larger than the cells of its level, so two overlapping colliders on the same level are in
+ * the same or neighboring cells. Each cell is tested against itself and half of its neighbors, and each collider
+ * against the cells of every coarser level that holds colliders whose centers are within half a cell of its AABB.
+ *
+ * @author Daniel
+ *
+ */
+public class CCHierarchicalGrid extends CollisionChecker{
+	
+	// Number of levels, cells on the last level are minCellSize * 2^(LEVELS - 1) wide
+	private static final int LEVELS = 32;
+	
+	// Colliders are kept slightly smaller than their cells so rounding of the centers
+	// cannot put an overlapping pair more than one cell apart
+	private static final float CELL_FILL = 0.99f;
+	
+	// Width and height of the cells on each level
+	private final float[] cellSize;
+	
+	// First cell in each hash bucket, -1 if empty
+	private int[] buckets;
+	
+	// Occupied cells, their level, coordinates on that level and first collider
+	private int[] cellLevel;
+	private int[] cellX;
+	private int[] cellY;
+	private int[] cellFirst;
+	private int[] cellNext;
+	private int cellCount;
+	
+	// Next collider in the same cell, -1 if last
+	private int[] colliderNext;
+	
+	// Number of colliders stored on each level
+	private final int[] levelCount = new int[LEVELS];
+	
+	
+	public CCHierarchicalGrid(ColliderStore colliders, float minCellSize){
+		super(colliders);
+		
+		cellSize = new float[LEVELS];
+		
+		for(int i = 0; i < LEVELS; i++)
+			cellSize[i] = minCellSize * (float)Math.pow(2, i);
+		
+		buckets = new int[0];
+		cellLevel = new int[0];
+		cellX = new int[0];
+		cellY = new int[0];
+		cellFirst = new int[0];
+		cellNext = new int[0];
+		colliderNext = new int[0];
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		build();
+		
+		// Highest level holding colliders
+		int topLevel = LEVELS - 1;
+		
+		while(topLevel > 0 && levelCount[topLevel] == 0)
+			topLevel--;
+		
+		for(int cell = 0; cell < cellCount; cell++){
+			int level = cellLevel[cell];
+			int x = cellX[cell];
+			int y = cellY[cell];
+			
+			// Pairs within the cell
+			for(int i = cellFirst[cell]; i != -1; i = colliderNext[i])
+				testList(i, colliderNext[i], pairs);
+			
+			// Neighbors on the same level, only half of them so each pair of cells is tested once
+			testCell(cell, findCell(level, x + 1, y), pairs);
+			testCell(cell, findCell(level, x - 1, y + 1), pairs);
+			testCell(cell, findCell(level, x, y + 1), pairs);
+			testCell(cell, findCell(level, x + 1, y + 1), pairs);
+			
+			// Cells on every coarser level that holds colliders
+			for(int other = level + 1; other <= topLevel; other++)
+				if(levelCount[other] != 0)
+					for(int i = cellFirst[cell]; i != -1; i = colliderNext[i])
+						testCoarser(i, other, pairs);
+		}
+	}
+	
+	// Test a collider against the colliders of a coarser level
+	// Colliders there reach at most half a cell from their center, so only cells within half
+	// a cell of the collider's AABB can hold a collider overlapping it
+	private void testCoarser(int i, int level, PairBuffer pairs){
+		
+		float half = cellSize[level] / 2;
+		
+		int x1 = toCell(colliders.lowerBoundX[i] - half, level);
+		int y1 = toCell(colliders.lowerBoundY[i] - half, level);
+		int x2 = toCell(colliders.upperBoundX[i] + half, level);
+		int y2 = toCell(colliders.upperBoundY[i] + half, level);
+		
+		for(int y = y1; y <= y2; y++){
+			for(int x = x1; x <= x2; x++){
+				int cell = findCell(level, x, y);
+				
+				if(cell != -1)
+					testList(i, cellFirst[cell], pairs);
+			}
+		}
+	}
+	
+	// Add every collider to the cell containing its center on its level
+	private void build(){
+		
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		
+		int count = colliders.size();
+		ensureCapacity(count);
+		
+		// Clear table
+		for(int i = 0; i < buckets.length; i++)
+			buckets[i] = -1;
+		
+		for(int i = 0; i < LEVELS; i++)
+			levelCount[i] = 0;
+		
+		int mask = buckets.length - 1;
+		cellCount = 0;
+		
+		for(int i = 0; i < count; i++){
+			int level = getLevel(Math.max(upperBoundX[i] - lowerBoundX[i], upperBoundY[i] - lowerBoundY[i]));
+			int x = toCell((lowerBoundX[i] + upperBoundX[i]) / 2, level);
+			int y = toCell((lowerBoundY[i] + upperBoundY[i]) / 2, level);
+			
+			int bucket = hash(level, x, y) & mask;
+			int cell = findCell(bucket, level, x, y);
+			
+			// First collider in this cell
+			if(cell == -1){
+				cell = cellCount++;
+				cellLevel[cell] = level;
+				cellX[cell] = x;
+				cellY[cell] = y;
+				cellFirst[cell] = -1;
+				cellNext[cell] = buckets[bucket];
+				buckets[bucket] = cell;
+			}
+			
+			colliderNext[i] = cellFirst[cell];
+			cellFirst[cell] = i;
+			levelCount[level]++;
+		}
+	}
+	
+	// Finest level whose cells hold a collider of the given size
+	private int getLevel(float size){
+		
+		// Estimate from the exponent, then correct it
+		int level = Math.min(Math.max(Math.getExponent(size / CELL_FILL / cellSize[0]), 0), LEVELS - 1);
+		
+		while(level > 0 && cellSize[level - 1] * CELL_FILL >= size)
+			level--;
+		
+		while(level < LEVELS - 1 && cellSize[level] * CELL_FILL < size)
+			level++;
+		
+		return level;
+	}
+	
+	// Test every collider of a cell against every collider of another cell
+	private void testCell(int cell, int other, PairBuffer pairs){
+		
+		if(other == -1)
+			return;
+		
+		for(int i = cellFirst[cell]; i != -1; i = colliderNext[i])
+			testList(i, cellFirst[other], pairs);
+	}
+	
+	// Test a collider against a list of colliders starting at first
+	private void testList(int i, int first, PairBuffer pairs){
+		
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		
+		float lx = lowerBoundX[i];
+		float ly = lowerBoundY[i];
+		float ux = upperBoundX[i];
+		float uy = upperBoundY[i];
+		
+		for(int j = first; j != -1; j = colliderNext[j]){
+			if(	lx > upperBoundX[j] || ly > upperBoundY[j] ||
+				lowerBoundX[j] > ux || lowerBoundY[j] > uy)
+				continue;
+			
+			pairs.add(i, j);
+		}
+	}
+	
+	// Occupied cell at the given level and coordinates, -1 if empty
+	private int findCell(int level, int x, int y){
+		return findCell(hash(level, x, y) & (buckets.length - 1), level, x, y);
+	}
+	
+	private int findCell(int bucket, int level, int x, int y){
+		
+		for(int cell = buckets[bucket]; cell != -1; cell = cellNext[cell])
+			if(cellX[cell] == x && cellY[cell] == y && cellLevel[cell] == level)
+				return cell;
+		
+		return -1;
+	}
+	
+	private int toCell(float x, int level){
+		return (int)Math.floor(x / cellSize[level]);
+	}
+	
+	private int hash(int level, int x, int y){
+		int h = x * 0x8da6b343 ^ y * 0xd8163841 ^ level * 0xcb1ab31f;
+		return h ^ (h >>> 16);
+	}
+	
+	// Grow cell arrays and keep the table at least twice the collider count
+	private void ensureCapacity(int count){
+		
+		if(cellLevel.length < count){
+			int size = Math.max(count, cellLevel.length * 2);
+			
+			cellLevel = new int[size];
+			cellX = new int[size];
+			cellY = new int[size];
+			cellFirst = new int[size];
+			cellNext = new int[size];
+			colliderNext = new int[size];
+		}
+		
+		int tableSize = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+		
+		if(buckets.length < tableSize)
+			buckets = new int[tableSize];
+	}
+	
+	
+	// Occupied cells from the last check, for debug drawing
+	public int getCellCount(){
+		return cellCount;
+	}
+	
+	public void getCellAABB(int cell, AABB aabb){
+		float size = cellSize[cellLevel[cell]];
+		aabb.lowerBoundX = cellX[cell] * size;
+		aabb.lowerBoundY = cellY[cell] * size;
+		aabb.upperBoundX = aabb.lowerBoundX + size;
+		aabb.upperBoundY = aabb.lowerBoundY + size;
+	}
+	
+	public float getMinCellSize(){
+		return cellSize[0];
+	}
+}
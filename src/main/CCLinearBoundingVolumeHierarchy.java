@@ -0,0 +1,456 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * CCLinearBoundingVolumeHierarchy.java
+ *
+ * Linear bounding volume hierarchy collision checking algorithm. The tree is rebuilt from scratch every frame,
+ * so there is no insertion or removal state to maintain.
+ *
+ * Collider centers are mapped to 30-bit Morton codes (15 bits per axis) over the bounds of all centers, and the
+ * colliders are radix sorted by code. The hierarchy over the sorted colliders is emitted as in Karras' "Maximizing
+ * Parallelism in the Construction of BVHs, Octrees, and k-d Trees": each of the n - 1 branches finds its range and
+ * split from the codes alone, then bounds are filled bottom-up, with the second child to finish computing its
+ * parent. Every collider then queries the tree for overlapping colliders later in sorted order.
+ *
+ * Nodes 0 to n - 2 are branches with branch 0 as the root, and nodes n - 1 to 2n - 2 are the leaves in sorted order.
+ * In parallel mode every step is split across a ForkJoinPool. The output contains the same pairs in both modes.
+ *
+ * @author Daniel
+ *
+ */
+public class CCLinearBoundingVolumeHierarchy extends CollisionChecker{
+	
+	public static final int MODE_SERIAL = 0;
+	public static final int MODE_PARALLEL = 1;
+	
+	// Bits of the Morton code per axis
+	private static final int MORTON_BITS = 15;
+	
+	// Bits sorted per radix pass, 4 passes cover the 30-bit codes
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	private static final int RADIX_PASSES = 4;
+	
+	// Every level of the tree extends the common prefix of the code and index, so the tree is at most 64 levels deep
+	// and a traversal holds at most one pending node per level plus the one being expanded
+	private static final int MAX_STACK = 128;
+	
+	// Chunks per pool thread for the build steps
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	// Steps of the build, run for each chunk of items
+	private static final int STEP_CODES = 0;
+	private static final int STEP_HISTOGRAM = 1;
+	private static final int STEP_SCATTER = 2;
+	private static final int STEP_BRANCHES = 3;
+	private static final int STEP_BOUNDS = 4;
+	
+	private final ForkJoinPool pool;
+	private final ParallelPairKernel kernel;
+	
+	// Morton code and collider id of each leaf, sorted by code, and the radix sort buffers
+	private int[] codes, sortedIds;
+	private int[] tempCodes, tempIds;
+	
+	// Digit counts of each chunk in the current radix pass, turned into scatter offsets
+	private int[] histograms;
+	private int radixShift;
+	
+	// Node bounds
+	private float[] lowerBoundX, lowerBoundY;
+	private float[] upperBoundX, upperBoundY;
+	
+	// Children and parent of each node, parent of the root is -1
+	private int[] left, right, parent;
+	
+	// Last leaf covered by each branch, in sorted order
+	private int[] rangeLast;
+	
+	// Children of each branch that have finished their bounds
+	private AtomicIntegerArray arrivals;
+	
+	// Bounds of the collider centers, for quantizing the codes
+	private float minX, minY, scaleX, scaleY;
+	
+	private int leafCount;
+	private int chunks;
+	
+	// Traversal stack of each pool thread
+	private final ThreadLocal<int[]> stacks = ThreadLocal.withInitial(() -> new int[MAX_STACK]);
+	
+	private final ParallelPairKernel.Job queryJob = this::queryLeaves;
+	
+	
+	public CCLinearBoundingVolumeHierarchy(ColliderStore colliders){
+		this(colliders, ForkJoinPool.commonPool());
+	}
+	
+	public CCLinearBoundingVolumeHierarchy(ColliderStore colliders, ForkJoinPool pool){
+		super(colliders, "Serial", "Parallel");
+		this.pool = pool;
+		kernel = new ParallelPairKernel(pool);
+		
+		codes = sortedIds = tempCodes = tempIds = new int[0];
+		histograms = new int[0];
+		lowerBoundX = lowerBoundY = upperBoundX = upperBoundY = new float[0];
+		left = right = parent = rangeLast = new int[0];
+		arrivals = new AtomicIntegerArray(0);
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		build();
+		
+		if(leafCount < 2)
+			return;
+		
+		if(mode == MODE_PARALLEL)
+			kernel.run(leafCount, queryJob, pairs);
+		else
+			queryLeaves(0, leafCount, pairs);
+	}
+	
+	// Rebuild the tree over the current colliders
+	private void build(){
+		
+		leafCount = colliders.size();
+		
+		if(leafCount == 0)
+			return;
+		
+		ensureCapacity(leafCount);
+		
+		chunks = mode == MODE_PARALLEL ? Math.min(leafCount, pool.getParallelism() * CHUNKS_PER_THREAD) : 1;
+		
+		if(histograms.length < chunks * RADIX)
+			histograms = new int[chunks * RADIX];
+		
+		computeCenterBounds();
+		runStep(STEP_CODES);
+		
+		// Sort codes, each pass is stable so the order of earlier digits is kept
+		for(int pass = 0; pass < RADIX_PASSES; pass++){
+			radixShift = pass * RADIX_BITS;
+			
+			runStep(STEP_HISTOGRAM);
+			prefixHistograms();
+			runStep(STEP_SCATTER);
+			
+			int[] swap = codes;
+			codes = tempCodes;
+			tempCodes = swap;
+			
+			swap = sortedIds;
+			sortedIds = tempIds;
+			tempIds = swap;
+		}
+		
+		if(leafCount == 1)
+			return;
+		
+		parent[0] = -1;
+		runStep(STEP_BRANCHES);
+		runStep(STEP_BOUNDS);
+	}
+	
+	private void ensureCapacity(int count){
+		
+		if(codes.length >= count)
+			return;
+		
+		int capacity = Math.max(count, codes.length * 2);
+		int nodes = capacity * 2 - 1;
+		
+		codes = new int[capacity];
+		sortedIds = new int[capacity];
+		tempCodes = new int[capacity];
+		tempIds = new int[capacity];
+		
+		lowerBoundX = new float[nodes];
+		lowerBoundY = new float[nodes];
+		upperBoundX = new float[nodes];
+		upperBoundY = new float[nodes];
+		left = new int[nodes];
+		right = new int[nodes];
+		parent = new int[nodes];
+		rangeLast = new int[nodes];
+		arrivals = new AtomicIntegerArray(capacity);
+	}
+	
+	private void computeCenterBounds(){
+		
+		float[] x = colliders.x;
+		float[] y = colliders.y;
+		
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		minX = Float.POSITIVE_INFINITY;
+		minY = Float.POSITIVE_INFINITY;
+		
+		for(int i = 0; i < leafCount; i++){
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		
+		// Map centers to the integer range of a code axis
+		int cells = (1 << MORTON_BITS) - 1;
+		scaleX = maxX > minX ? cells / (maxX - minX) : 0;
+		scaleY = maxY > minY ? cells / (maxY - minY) : 0;
+	}
+	
+	// Run a build step over all chunks, on the pool in parallel mode
+	private void runStep(int step){
+		
+		if(chunks == 1)
+			runChunk(step, 0);
+		else
+			pool.invoke(new StepTask(step, 0, chunks));
+	}
+	
+	private void runChunk(int step, int chunk){
+		
+		// Branches are one fewer than leaves
+		int count = step == STEP_BRANCHES ? leafCount - 1 : leafCount;
+		int start = (int)((long)count * chunk / chunks);
+		int end = (int)((long)count * (chunk + 1) / chunks);
+		
+		switch(step){
+		case STEP_CODES:		computeCodes(start, end);				break;
+		case STEP_HISTOGRAM:	countDigits(chunk, start, end);			break;
+		case STEP_SCATTER:		scatter(chunk, start, end);				break;
+		case STEP_BRANCHES:		emitBranches(start, end);				break;
+		case STEP_BOUNDS:		computeBounds(start, end);				break;
+		}
+	}
+	
+	private void computeCodes(int start, int end){
+		for(int i = start; i < end; i++){
+			int cx = (int)((colliders.x[i] - minX) * scaleX);
+			int cy = (int)((colliders.y[i] - minY) * scaleY);
+			
+			codes[i] = (spreadBits(cx) << 1) | spreadBits(cy);
+			sortedIds[i] = i;
+		}
+	}
+	
+	// Insert a zero bit above each of the low 15 bits
+	private static int spreadBits(int v){
+		v &= 0x7fff;
+		v = (v | (v << 8)) & 0x00ff00ff;
+		v = (v | (v << 4)) & 0x0f0f0f0f;
+		v = (v | (v << 2)) & 0x33333333;
+		v = (v | (v << 1)) & 0x55555555;
+		return v;
+	}
+	
+	private void countDigits(int chunk, int start, int end){
+		
+		int base = chunk * RADIX;
+		Arrays.fill(histograms, base, base + RADIX, 0);
+		
+		for(int i = start; i < end; i++)
+			histograms[base + ((codes[i] >>> radixShift) & (RADIX - 1))]++;
+	}
+	
+	// Turn the digit counts into the first output index of each digit in each chunk
+	// Digits are ordered first and chunks second, so equal digits keep their order
+	private void prefixHistograms(){
+		
+		int offset = 0;
+		
+		for(int digit = 0; digit < RADIX; digit++){
+			for(int chunk = 0; chunk < chunks; chunk++){
+				int count = histograms[chunk * RADIX + digit];
+				histograms[chunk * RADIX + digit] = offset;
+				offset += count;
+			}
+		}
+	}
+	
+	private void scatter(int chunk, int start, int end){
+		
+		int base = chunk * RADIX;
+		
+		for(int i = start; i < end; i++){
+			int slot = histograms[base + ((codes[i] >>> radixShift) & (RADIX - 1))]++;
+			tempCodes[slot] = codes[i];
+			tempIds[slot] = sortedIds[i];
+		}
+	}
+	
+	// Find the range and split of branches, and link their children
+	private void emitBranches(int start, int end){
+		
+		int leafOffset = leafCount - 1;
+		
+		for(int i = start; i < end; i++){
+			
+			// Direction of the range, towards the neighbor sharing the longer prefix
+			int d = prefix(i, i + 1) > prefix(i, i - 1) ? 1 : -1;
+			
+			// Find the other end of the range with an exponential then a binary search
+			int minPrefix = prefix(i, i - d);
+			int maxLength = 2;
+			
+			while(prefix(i, i + maxLength * d) > minPrefix)
+				maxLength *= 2;
+			
+			int length = 0;
+			
+			for(int t = maxLength / 2; t > 0; t /= 2)
+				if(prefix(i, i + (length + t) * d) > minPrefix)
+					length += t;
+			
+			int j = i + length * d;
+			
+			// Find the split, the last leaf sharing more than the range's common prefix with i
+			int nodePrefix = prefix(i, j);
+			int split = 0;
+			
+			for(int div = 2, t; ; div *= 2){
+				t = (length + div - 1) / div;
+				
+				if(prefix(i, i + (split + t) * d) > nodePrefix)
+					split += t;
+				
+				if(t <= 1)
+					break;
+			}
+			
+			int gamma = i + split * d + Math.min(d, 0);
+			int first = Math.min(i, j);
+			int last = Math.max(i, j);
+			
+			left[i] = first == gamma ? leafOffset + gamma : gamma;
+			right[i] = last == gamma + 1 ? leafOffset + gamma + 1 : gamma + 1;
+			parent[left[i]] = i;
+			parent[right[i]] = i;
+			rangeLast[i] = last;
+			
+			arrivals.set(i, 0);
+		}
+	}
+	
+	// Length of the common prefix of two sorted leaves' codes, -1 if j is out of range
+	// Equal codes are told apart by their indices
+	private int prefix(int i, int j){
+		
+		if(j < 0 || j >= leafCount)
+			return -1;
+		
+		int difference = codes[i] ^ codes[j];
+		
+		if(difference == 0)
+			return 32 + Integer.numberOfLeadingZeros(i ^ j);
+		
+		return Integer.numberOfLeadingZeros(difference);
+	}
+	
+	// Set leaf bounds, then walk up while this path is the second to reach each branch
+	private void computeBounds(int start, int end){
+		
+		int leafOffset = leafCount - 1;
+		
+		for(int i = start; i < end; i++){
+			int node = leafOffset + i;
+			setLeafBounds(node);
+			
+			node = parent[node];
+			
+			// The first child to arrive stops, its bounds are visible to the second through the atomic
+			while(node != -1 && arrivals.getAndIncrement(node) == 1){
+				int a = left[node];
+				int b = right[node];
+				
+				lowerBoundX[node] = Math.min(lowerBoundX[a], lowerBoundX[b]);
+				lowerBoundY[node] = Math.min(lowerBoundY[a], lowerBoundY[b]);
+				upperBoundX[node] = Math.max(upperBoundX[a], upperBoundX[b]);
+				upperBoundY[node] = Math.max(upperBoundY[a], upperBoundY[b]);
+				
+				node = parent[node];
+			}
+		}
+	}
+	
+	private void setLeafBounds(int node){
+		int id = sortedIds[node - (leafCount - 1)];
+		
+		lowerBoundX[node] = colliders.lowerBoundX[id];
+		lowerBoundY[node] = colliders.lowerBoundY[id];
+		upperBoundX[node] = colliders.upperBoundX[id];
+		upperBoundY[node] = colliders.upperBoundY[id];
+	}
+	
+	// Find the pairs of each leaf in a range with the leaves after it in sorted order
+	private void queryLeaves(int start, int end, PairBuffer pairs){
+		
+		int leafOffset = leafCount - 1;
+		int[] stack = stacks.get();
+		
+		for(int i = start; i < end; i++){
+			int myNode = leafOffset + i;
+			
+			float lx = lowerBoundX[myNode];
+			float ly = lowerBoundY[myNode];
+			float ux = upperBoundX[myNode];
+			float uy = upperBoundY[myNode];
+			
+			int stackSize = 0;
+			stack[stackSize++] = 0;
+			
+			while(stackSize > 0){
+				int node = stack[--stackSize];
+				
+				if(	lx > upperBoundX[node] || ly > upperBoundY[node] ||
+					lowerBoundX[node] > ux || lowerBoundY[node] > uy)
+					continue;
+				
+				// Leaf, only pairs with later leaves are added so each pair is found once
+				if(node >= leafOffset){
+					if(node > myNode)
+						pairs.add(sortedIds[i], sortedIds[node - leafOffset]);
+					continue;
+				}
+				
+				// Branches whose leaves all come before this one hold no new pairs
+				if(rangeLast[node] <= i)
+					continue;
+				
+				stack[stackSize++] = left[node];
+				stack[stackSize++] = right[node];
+			}
+		}
+	}
+	
+	// Splits a range of chunks in half until a single chunk is left
+	private class StepTask extends RecursiveAction{
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int step;
+		private final int first, last;
+		
+		StepTask(int step, int first, int last){
+			this.step = step;
+			this.first = first;
+			this.last = last;
+		}
+		
+		protected void compute(){
+			
+			if(last - first > 1){
+				int mid = (first + last) >>> 1;
+				invokeAll(new StepTask(step, first, mid), new StepTask(step, mid, last));
+				return;
+			}
+			
+			runChunk(step, first);
+		}
+	}
+}
@@ -0,0 +1,428 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * CCLooseQuadtree.java
+ *
+ * Loose quadtree collision checking algorithm over a fixed square region centered on the origin.
+ *
+ * Each collider is stored in the deepest node whose cell is at least as large as the collider, chosen by the
+ * collider's center. Nodes are loose: their bounds extend half a cell past each side of the cell, so a stored
+ * collider always lies within its node's loose bounds and moving colliders only change node when their center
+ * crosses a cell edge. Colliders outside the region are clamped to its edge cells, or stored higher up when they
+ * do not fit the clamped cell's loose bounds.
+ *
+ * Nodes are kept in flat arrays and allocated in groups of four siblings from a free list. Groups whose subtree
+ * no longer holds any collider are returned to the free list.
+ *
+ * Colliders strictly fit the loose bounds of their node, so two overlapping colliders are either in the same node,
+ * in neighboring nodes on the same level, or one is in an ancestor of the other's node or a neighbor of that
+ * ancestor. Each node is tested against itself, half of its neighbors, and the ancestors and their neighbors on
+ * the levels above that hold colliders.
+ *
+ * @author Daniel
+ *
+ */
+public class CCLooseQuadtree extends CollisionChecker{
+	
+	public static final int NULL_NODE = -1;
+	
+	// Deepest level of the tree, cells at this level are 1 / 2^MAX_DEPTH of the region size
+	private static final int MAX_DEPTH = 12;
+	
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	// Region
+	private final float rootMinX, rootMinY;
+	private final float rootSize;
+	
+	// Node depth and cell coordinates at that depth
+	private int[] nodeDepth;
+	private int[] nodeCellX, nodeCellY;
+	
+	// First of the four children, NULL_NODE if there are none, and parent
+	// For the first node of a free group, the next free group
+	private int[] nodeChildren;
+	private int[] nodeParent;
+	
+	// First collider in each node's list, and the number of colliders in each node's subtree
+	private int[] nodeFirst;
+	private int[] nodeCount;
+	
+	private int nodeCapacity;
+	private int freeGroup;
+	
+	// Node of each collider and its links in the node's list
+	private int[] colliderNode;
+	private int[] colliderNext, colliderPrev;
+	
+	// Store modCount when the tree was built, the tree is rebuilt when colliders are added or removed
+	private int builtModCount = -1;
+	
+	// Number of colliders stored on each level
+	private final int[] levelCount = new int[MAX_DEPTH + 1];
+	
+	
+	public CCLooseQuadtree(ColliderStore colliders, float regionSizeX, float regionSizeY){
+		super(colliders);
+		
+		rootSize = Math.max(regionSizeX, regionSizeY);
+		rootMinX = -rootSize / 2;
+		rootMinY = -rootSize / 2;
+		
+		nodeCapacity = 1;
+		nodeDepth = new int[nodeCapacity];
+		nodeCellX = new int[nodeCapacity];
+		nodeCellY = new int[nodeCapacity];
+		nodeChildren = new int[nodeCapacity];
+		nodeParent = new int[nodeCapacity];
+		nodeFirst = new int[nodeCapacity];
+		nodeCount = new int[nodeCapacity];
+		
+		colliderNode = new int[0];
+		colliderNext = new int[0];
+		colliderPrev = new int[0];
+		
+		clear();
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		if(builtModCount != colliders.getModCount())
+			rebuild();
+		else{
+			// Move colliders whose node changed
+			for(int i = 0; i < colliders.size(); i++)
+				update(i);
+		}
+		
+		for(int node = 0; node < nodeCapacity; node++){
+			if(nodeFirst[node] == -1)
+				continue;
+			
+			int depth = nodeDepth[node];
+			int cellX = nodeCellX[node];
+			int cellY = nodeCellY[node];
+			
+			// Pairs within the node
+			for(int i = nodeFirst[node]; i != -1; i = colliderNext[i])
+				testList(i, colliderNext[i], pairs);
+			
+			// Neighbors on the same level, only half of them so each pair of nodes is tested once
+			testNode(node, findNode(depth, cellX + 1, cellY), pairs);
+			testNode(node, findNode(depth, cellX - 1, cellY + 1), pairs);
+			testNode(node, findNode(depth, cellX, cellY + 1), pairs);
+			testNode(node, findNode(depth, cellX + 1, cellY + 1), pairs);
+			
+			// Ancestors and their neighbors on every level above that holds colliders
+			for(int level = 0; level < depth; level++){
+				if(levelCount[level] == 0)
+					continue;
+				
+				int shift = depth - level;
+				
+				for(int y = (cellY >> shift) - 1; y <= (cellY >> shift) + 1; y++)
+					for(int x = (cellX >> shift) - 1; x <= (cellX >> shift) + 1; x++)
+						testNode(node, findNode(level, x, y), pairs);
+			}
+		}
+	}
+	
+	// Test every collider of a node against every collider of another node
+	private void testNode(int node, int other, PairBuffer pairs){
+		
+		if(other == NULL_NODE || nodeFirst[other] == -1)
+			return;
+		
+		for(int i = nodeFirst[node]; i != -1; i = colliderNext[i])
+			testList(i, nodeFirst[other], pairs);
+	}
+	
+	// Test a collider against a list of colliders starting at first
+	private void testList(int i, int first, PairBuffer pairs){
+		
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		
+		float lx = lowerBoundX[i];
+		float ly = lowerBoundY[i];
+		float ux = upperBoundX[i];
+		float uy = upperBoundY[i];
+		
+		for(int j = first; j != -1; j = colliderNext[j]){
+			if(	lx > upperBoundX[j] || ly > upperBoundY[j] ||
+				lowerBoundX[j] > ux || lowerBoundY[j] > uy)
+				continue;
+			
+			pairs.add(i, j);
+		}
+	}
+	
+	// Node of a cell, or NULL_NODE if the cell is outside the region or has no node
+	private int findNode(int depth, int cellX, int cellY){
+		
+		if(cellX < 0 || cellY < 0 || cellX >= 1 << depth || cellY >= 1 << depth)
+			return NULL_NODE;
+		
+		int node = 0;
+		
+		for(int shift = depth - 1; shift >= 0 && node != NULL_NODE; shift--){
+			int children = nodeChildren[node];
+			
+			if(children == NULL_NODE)
+				return NULL_NODE;
+			
+			node = children + (((cellX >> shift) & 1) | (((cellY >> shift) & 1) << 1));
+		}
+		
+		return node;
+	}
+	
+	// Remove all colliders and insert them again
+	private void rebuild(){
+		
+		clear();
+		
+		int count = colliders.size();
+		
+		if(colliderNode.length < count){
+			int capacity = Math.max(count, colliderNode.length * 2);
+			colliderNode = new int[capacity];
+			colliderNext = new int[capacity];
+			colliderPrev = new int[capacity];
+		}
+		
+		for(int i = 0; i < count; i++)
+			insert(i);
+		
+		builtModCount = colliders.getModCount();
+	}
+	
+	// Reset to an empty root, with all other nodes free
+	private void clear(){
+		nodeDepth[0] = 0;
+		nodeCellX[0] = 0;
+		nodeCellY[0] = 0;
+		nodeChildren[0] = NULL_NODE;
+		nodeParent[0] = NULL_NODE;
+		nodeCount[0] = 0;
+		Arrays.fill(nodeFirst, -1);
+		Arrays.fill(levelCount, 0);
+		
+		// Link the groups after the root
+		freeGroup = NULL_NODE;
+		
+		for(int group = nodeCapacity - 4; group >= 1; group -= 4){
+			nodeChildren[group] = freeGroup;
+			freeGroup = group;
+		}
+	}
+	
+	// Move a collider to another node if its depth or cell changed
+	private void update(int id){
+		
+		int node = colliderNode[id];
+		int depth = getDepth(id);
+		
+		if(	depth == nodeDepth[node] &&
+			getCellX(id, depth) == nodeCellX[node] && getCellY(id, depth) == nodeCellY[node])
+			return;
+		
+		remove(id);
+		insert(id);
+	}
+	
+	private void insert(int id){
+		
+		int depth = getDepth(id);
+		int cellX = getCellX(id, depth);
+		int cellY = getCellY(id, depth);
+		
+		// Descend from the root, creating children on the way
+		int node = 0;
+		nodeCount[node]++;
+		
+		for(int level = 1; level <= depth; level++){
+			if(nodeChildren[node] == NULL_NODE)
+				allocateChildren(node);
+			
+			int shift = depth - level;
+			int quadrant = ((cellX >> shift) & 1) | (((cellY >> shift) & 1) << 1);
+			
+			node = nodeChildren[node] + quadrant;
+			nodeCount[node]++;
+		}
+		
+		levelCount[depth]++;
+		
+		// Link at the front of the node's list
+		colliderNode[id] = node;
+		colliderPrev[id] = -1;
+		colliderNext[id] = nodeFirst[node];
+		
+		if(nodeFirst[node] != -1)
+			colliderPrev[nodeFirst[node]] = id;
+		
+		nodeFirst[node] = id;
+	}
+	
+	private void remove(int id){
+		
+		int node = colliderNode[id];
+		levelCount[nodeDepth[node]]--;
+		
+		// Unlink from the node's list
+		if(colliderPrev[id] != -1)
+			colliderNext[colliderPrev[id]] = colliderNext[id];
+		else
+			nodeFirst[node] = colliderNext[id];
+		
+		if(colliderNext[id] != -1)
+			colliderPrev[colliderNext[id]] = colliderPrev[id];
+		
+		// Update subtree counts, then free the children of the highest node left empty
+		int empty = NULL_NODE;
+		
+		for(int n = node; n != NULL_NODE; n = nodeParent[n])
+			if(--nodeCount[n] == 0)
+				empty = n;
+		
+		if(empty != NULL_NODE)
+			freeChildren(empty);
+	}
+	
+	private void allocateChildren(int node){
+		
+		if(freeGroup == NULL_NODE)
+			grow();
+		
+		int children = freeGroup;
+		freeGroup = nodeChildren[children];
+		
+		int depth = nodeDepth[node] + 1;
+		
+		for(int i = 0; i < 4; i++){
+			int c = children + i;
+			
+			nodeDepth[c] = depth;
+			nodeCellX[c] = nodeCellX[node] * 2 + (i & 1);
+			nodeCellY[c] = nodeCellY[node] * 2 + (i >> 1);
+			nodeChildren[c] = NULL_NODE;
+			nodeParent[c] = node;
+			nodeFirst[c] = -1;
+			nodeCount[c] = 0;
+		}
+		
+		nodeChildren[node] = children;
+	}
+	
+	// Return the empty subtrees below a node to the free list
+	private void freeChildren(int node){
+		
+		int children = nodeChildren[node];
+		
+		if(children == NULL_NODE)
+			return;
+		
+		for(int c = children; c < children + 4; c++)
+			freeChildren(c);
+		
+		nodeChildren[children] = freeGroup;
+		freeGroup = children;
+		nodeChildren[node] = NULL_NODE;
+	}
+	
+	// Double the node arrays, linking the new groups into the free list
+	private void grow(){
+		
+		int oldCapacity = nodeCapacity;
+		nodeCapacity = Math.max(DEFAULT_CAPACITY, (nodeCapacity - 1) * 2) + 1;
+		
+		nodeDepth = Arrays.copyOf(nodeDepth, nodeCapacity);
+		nodeCellX = Arrays.copyOf(nodeCellX, nodeCapacity);
+		nodeCellY = Arrays.copyOf(nodeCellY, nodeCapacity);
+		nodeChildren = Arrays.copyOf(nodeChildren, nodeCapacity);
+		nodeParent = Arrays.copyOf(nodeParent, nodeCapacity);
+		nodeFirst = Arrays.copyOf(nodeFirst, nodeCapacity);
+		nodeCount = Arrays.copyOf(nodeCount, nodeCapacity);
+		Arrays.fill(nodeFirst, oldCapacity, nodeCapacity, -1);
+		
+		for(int group = nodeCapacity - 4; group >= oldCapacity; group -= 4){
+			nodeChildren[group] = freeGroup;
+			freeGroup = group;
+		}
+	}
+	
+	// Deepest level whose cells are at least as large as the collider
+	// Colliders that do not strictly fit the loose bounds of the cell, such as colliders outside the region, move up
+	// until they do
+	private int getDepth(int id){
+		float size = Math.max(colliders.upperBoundX[id] - colliders.lowerBoundX[id], colliders.upperBoundY[id] - colliders.lowerBoundY[id]);
+		
+		int depth = 0;
+		
+		while(depth < MAX_DEPTH && getCellSize(depth + 1) >= size)
+			depth++;
+		
+		while(depth > 0 && !fitsLooseCell(id, depth))
+			depth--;
+		
+		return depth;
+	}
+	
+	// The bounds are computed the same way for every cell, so the upper bound of a cell's loose bounds is exactly the
+	// lower bound of the cell two over, and colliders strictly inside them cannot touch colliders two cells away
+	private boolean fitsLooseCell(int id, int depth){
+		float cellSize = getCellSize(depth);
+		int cellX = getCellX(id, depth);
+		int cellY = getCellY(id, depth);
+		
+		return	colliders.lowerBoundX[id] > rootMinX + (cellX - 0.5f) * cellSize &&
+				colliders.lowerBoundY[id] > rootMinY + (cellY - 0.5f) * cellSize &&
+				colliders.upperBoundX[id] < rootMinX + (cellX + 1.5f) * cellSize &&
+				colliders.upperBoundY[id] < rootMinY + (cellY + 1.5f) * cellSize;
+	}
+	
+	// Cell of the collider's center at a depth, clamped to the region
+	private int getCellX(int id, int depth){
+		int cell = (int)Math.floor((colliders.x[id] - rootMinX) / getCellSize(depth));
+		return Math.max(0, Math.min(cell, (1 << depth) - 1));
+	}
+	
+	private int getCellY(int id, int depth){
+		int cell = (int)Math.floor((colliders.y[id] - rootMinY) / getCellSize(depth));
+		return Math.max(0, Math.min(cell, (1 << depth) - 1));
+	}
+	
+	private float getCellSize(int depth){
+		return rootSize / (1 << depth);
+	}
+	
+	public int getRoot(){
+		return 0;
+	}
+	
+	// Child in a quadrant from 0 to 3, ordered by x then y, or NULL_NODE
+	public int getChild(int node, int quadrant){
+		return nodeChildren[node] == NULL_NODE ? NULL_NODE : nodeChildren[node] + quadrant;
+	}
+	
+	// Number of colliders in a node and its descendants
+	public int getSubtreeCount(int node){
+		return nodeCount[node];
+	}
+	
+	// Set an AABB to a node's cell, or its loose bounds
+	public void getCellAABB(int node, boolean loose, AABB aabb){
+		float cellSize = getCellSize(nodeDepth[node]);
+		float margin = loose ? cellSize / 2 : 0;
+		
+		aabb.lowerBoundX = rootMinX + nodeCellX[node] * cellSize - margin;
+		aabb.lowerBoundY = rootMinY + nodeCellY[node] * cellSize - margin;
+		aabb.upperBoundX = aabb.lowerBoundX + cellSize + margin * 2;
+		aabb.upperBoundY = aabb.lowerBoundY + cellSize + margin * 2;
+	}
+}
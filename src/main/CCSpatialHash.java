@@ -0,0 +1,137 @@
+package main;
+
+/**
+ * CCSpatialHash.java
+ *
+ * Uniform spatial hash grid collision checking algorithm.
+ * Each collider is added to every grid cell its AABB touches, and only colliders sharing a cell are tested.
+ *
+ * @author Daniel
+ *
+ */
+public class CCSpatialHash extends CollisionChecker{
+	
+	// Width and height of a grid cell
+	private final float cellSize;
+	
+	// First entry in each hash bucket, -1 if empty
+	private int[] buckets;
+	
+	// Entries, one per collider per cell
+	private int[] entryCollider;
+	private int[] entryCellX;
+	private int[] entryCellY;
+	private int[] entryNext;
+	private int entryCount;
+	
+	
+	public CCSpatialHash(ColliderStore colliders, float cellSize){
+		super(colliders);
+		this.cellSize = cellSize;
+		
+		buckets = new int[0];
+		entryCollider = new int[0];
+		entryCellX = new int[0];
+		entryCellY = new int[0];
+		entryNext = new int[0];
+	}
+	
+	public void checkCollisions(PairBuffer pairs){
+		
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		
+		// Count entries
+		int count = 0;
+		
+		for(int i = 0; i < colliders.size(); i++)
+			count += (toCell(upperBoundX[i]) - toCell(lowerBoundX[i]) + 1) * (toCell(upperBoundY[i]) - toCell(lowerBoundY[i]) + 1);
+
+		ensureCapacity(count);
+		
+		// Clear table
+		for(int i = 0; i < buckets.length; i++)
+			buckets[i] = -1;
+		
+		int mask = buckets.length - 1;
+		entryCount = 0;
+		
+		// Add each collider to all cells its AABB touches
+		for(int i = 0; i < colliders.size(); i++){
+			int cx1 = toCell(lowerBoundX[i]);
+			int cy1 = toCell(lowerBoundY[i]);
+			int cx2 = toCell(upperBoundX[i]);
+			int cy2 = toCell(upperBoundY[i]);
+
+			for(int cx = cx1; cx <= cx2; cx++){
+				for(int cy = cy1; cy <= cy2; cy++){
+					int bucket = hash(cx, cy) & mask;
+					
+					entryCollider[entryCount] = i;
+					entryCellX[entryCount] = cx;
+					entryCellY[entryCount] = cy;
+					entryNext[entryCount] = buckets[bucket];
+					buckets[bucket] = entryCount;
+					entryCount++;
+				}
+			}
+		}
+		
+		// Test entries sharing a bucket
+		for(int bucket = 0; bucket < buckets.length; bucket++){
+			for(int e1 = buckets[bucket]; e1 != -1; e1 = entryNext[e1]){
+				for(int e2 = entryNext[e1]; e2 != -1; e2 = entryNext[e2]){
+					
+					// Different cell with the same hash
+					if(entryCellX[e1] != entryCellX[e2] || entryCellY[e1] != entryCellY[e2])
+						continue;
+					
+					int c1 = entryCollider[e1];
+					int c2 = entryCollider[e2];
+					
+					if(!colliders.isOverlapping(c1, c2))
+						continue;
+					
+					// A pair sharing several cells is only added from the cell containing the
+					// lower corner of the overlap, so it is reported exactly once
+					if(	toCell(Math.max(lowerBoundX[c1], lowerBoundX[c2])) == entryCellX[e1] &&
+						toCell(Math.max(lowerBoundY[c1], lowerBoundY[c2])) == entryCellY[e1])
+						pairs.add(c1, c2);
+				}
+			}
+		}
+	}
+	
+	private int toCell(float x){
+		return (int)Math.floor(x / cellSize);
+	}
+	
+	private int hash(int cx, int cy){
+		int h = cx * 0x8da6b343 ^ cy * 0xd8163841;
+		return h ^ (h >>> 16);
+	}
+	
+	// Grow entry arrays and keep the table at least twice the entry count
+	private void ensureCapacity(int count){
+		
+		if(entryCollider.length < count){
+			int size = Math.max(count, entryCollider.length * 2);
+			
+			entryCollider = new int[size];
+			entryCellX = new int[size];
+			entryCellY = new int[size];
+			entryNext = new int[size];
+		}
+		
+		int tableSize = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+		
+		if(buckets.length < tableSize)
+			buckets = new int[tableSize];
+	}
+	
+	public float getCellSize(){
+		return cellSize;
+	}
+}
@@ -1,112 +1,484 @@
-package main;
-
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
-
-/**
- * CCSweepAndPrune.java
- * 
- * Sweep and prune collision checking algorithm.
- * 
- * @author Lucas
- *
- */
-
-public class CCSweepAndPrune extends CollisionChecker{
-
-	public CCSweepAndPrune(ArrayList<Collider> colliders){
-		super(colliders);
-		xIntervals = new ArrayList<ColliderInterval>();
-	}
-
-	private int numColliders = 0;
-
-	private ArrayList<ColliderInterval> xIntervals;
-
-	public ArrayList<Collision> checkCollisions(){
-
-		ArrayList<Collision> collisions = new ArrayList<Collision>();
-
-		//when colliders are removed, delete all collider intervals and add again
-		if (numColliders > colliders.size()){
-			ArrayList<ColliderInterval> toDelete = new ArrayList<ColliderInterval>();
-			for (ColliderInterval CI : xIntervals){
-				if (!colliders.contains(CI.collider)){
-					toDelete.add(CI);
-				}
-			}
-			for (ColliderInterval CI : toDelete){
-				xIntervals.remove(CI);
-			}
-
-		}
-		//when colliders added, add to xIntervals
-		if (numColliders < colliders.size()){
-			for (int i = numColliders; i < colliders.size(); i++){
-				Collider curCol = colliders.get(i);
-				ColliderInterval xLower = new ColliderInterval(curCol.getAABB().lowerBoundX, curCol, true);
-				ColliderInterval xUpper = new ColliderInterval(curCol.getAABB().upperBoundX, curCol, false);
-
-				xIntervals.add(xLower);
-				xIntervals.add(xUpper);
-				numColliders++;
-			}
-		}
-
-		//update collider bounds
-		for (ColliderInterval CI : xIntervals){
-			if (CI.start){
-				CI.interval = CI.collider.getAABB().lowerBoundX;
-			}
-			else {
-				CI.interval = CI.collider.getAABB().upperBoundX;
-			}
-		}
-
-		//sort interval list
-		InsertionSort(xIntervals);
-
-		//find overlapping bounds on x axis
-		Set<ColliderInterval> xMinsFound = new HashSet<ColliderInterval>();
-		//Set<Collision> xOverlaps = new HashSet<Collision>();
-		for (ColliderInterval curInt : xIntervals){
-			if (curInt.start){
-				xMinsFound.add(curInt);
-				
-				for(ColliderInterval CI : xMinsFound){
-					Collision newCollision = new Collision(curInt.collider, CI.collider);
-					if (curInt != CI && newCollision.collider1.getAABB().isOverlappingY(newCollision.collider2.getAABB())){
-						collisions.add(newCollision);
-					}
-				}
-			}
-			else {
-				ColliderInterval toDelete = new ColliderInterval(0, null, true);
-				for (ColliderInterval CI : xMinsFound){
-					if (CI.collider.equals(curInt.collider)){
-						toDelete = CI;
-					}
-				}
-				xMinsFound.remove(toDelete);
-			}
-		}
-		return  collisions;
-	}
-
-	private void InsertionSort(ArrayList<ColliderInterval> intervalList){
-		for (int i = 1; i < intervalList.size(); i++){
-			ColliderInterval key = intervalList.get(i);
-			int j = i - 1;
-			while (j >= 0 && key.interval < intervalList.get(j).interval){
-				intervalList.set(j + 1, intervalList.get(j));
-				j--;
-			}
-			intervalList.set(j + 1, key);
-		}
-	}
-	
-	public ArrayList<ColliderInterval> getIntervals(){
-		return xIntervals;
-	}
-}
\ No newline at end of file
+package main;
+
+import java.util.Arrays;
+
+/**
+ * CCSweepAndPrune.java
+ * 
+ * Sweep and prune collision checking algorithm.
+ * 
+ * In sweep mode, the sweep axis is picked periodically from the variance of collider centers, so colliders
+ * clustered in bands along one axis are swept along the other. Two axis mode keeps both endpoint lists
+ * sorted every frame and sweeps whichever axis has fewer overlapping intervals.
+ * 
+ * In incremental mode, sorted endpoint lists are kept on both axes together with a persistent set of
+ * overlapping pairs. Pairs only change when endpoints swap during the insertion sort, so the work per
+ * frame scales with how much colliders move rather than with the number of overlaps.
+ * 
+ * @author Lucas
+ *
+ */
+
+public class CCSweepAndPrune extends CollisionChecker{
+
+	public static final int MODE_SWEEP = 0;
+	public static final int MODE_INCREMENTAL = 1;
+	public static final int MODE_TWO_AXIS = 2;
+
+	public static final int AXIS_X = 0;
+	public static final int AXIS_Y = 1;
+
+	//frames between sweep axis choices in sweep mode
+	private static final int AXIS_UPDATE_INTERVAL = 16;
+
+	//variance ratio needed to switch axis, so the axis doesn't flip back and forth
+	private static final float AXIS_SWITCH_RATIO = 1.25f;
+
+	public CCSweepAndPrune(ColliderStore colliders){
+		super(colliders, "Sweep", "Incremental", "Two Axis");
+		xIntervals = new int[0];
+		yIntervals = new int[0];
+		xIntervalKeys = new float[0];
+		yIntervalKeys = new float[0];
+		active = new int[0];
+		activeIndex = new int[0];
+
+		xEndpoints = new int[0];
+		yEndpoints = new int[0];
+		xKeys = new float[0];
+		yKeys = new float[0];
+		sortScratch = new long[0];
+		overlaps = new PairSet();
+		previousOverlaps = new PairSet();
+		began = new PairSet();
+		ended = new PairSet();
+		rebuildPairs = new PairBuffer();
+		beganPairs = new PairBuffer();
+		endedPairs = new PairBuffer();
+	}
+
+	private int numColliders = 0;
+
+	//interval endpoints on each axis, kept sorted by key between frames
+	//each interval is (collider id << 1) | 1 for a start and (collider id << 1) for an end
+	private int[] xIntervals;
+	private int[] yIntervals;
+	private float[] xIntervalKeys;
+	private float[] yIntervalKeys;
+	private int numIntervals = 0;
+
+	//axis lists that were not sorted last frame and need a full sort
+	private boolean xStale = false;
+	private boolean yStale = true;
+
+	private int sweepAxis = AXIS_X;
+	private int framesUntilAxisUpdate = 0;
+
+	//colliders whose start has been swept but not their end
+	private int[] active;
+	private int numActive = 0;
+
+	//position of each collider in the active list, so ends are removed in O(1)
+	private int[] activeIndex;
+
+	//incremental mode endpoints on both axes, encoded like intervals
+	private int[] xEndpoints;
+	private int[] yEndpoints;
+	private float[] xKeys;
+	private float[] yKeys;
+	private long[] sortScratch;
+
+	//collider count the incremental lists were built for, -1 if they need a rebuild
+	private int numIncrementalColliders = -1;
+	private int incrementalModCount;
+
+	//pairs overlapping on both axes, kept between frames
+	private PairSet overlaps;
+	private PairSet previousOverlaps;
+	private PairBuffer rebuildPairs;
+
+	//pairs that started or stopped overlapping during the last check
+	private PairSet began;
+	private PairSet ended;
+	private PairBuffer beganPairs;
+	private PairBuffer endedPairs;
+
+	public void setMode(int mode){
+		super.setMode(mode);
+
+		//start the incremental state over, the pair set may be stale
+		numIncrementalColliders = -1;
+		overlaps.clear();
+
+		framesUntilAxisUpdate = 0;
+	}
+
+	public void checkCollisions(PairBuffer pairs){
+		if (mode == MODE_INCREMENTAL){
+			checkIncremental(pairs);
+			return;
+		}
+
+		//when colliders are removed, delete the intervals of ids past the end of the store
+		//removed ids are refilled with the last collider, so the remaining intervals stay valid
+		if (numColliders > colliders.size()){
+			removeIntervals(xIntervals, xIntervalKeys);
+			numIntervals = removeIntervals(yIntervals, yIntervalKeys);
+			numColliders = colliders.size();
+		}
+		//when colliders added, add to intervals
+		if (numColliders < colliders.size()){
+			if (xIntervals.length < colliders.size() * 2){
+				xIntervals = Arrays.copyOf(xIntervals, colliders.size() * 2);
+				yIntervals = Arrays.copyOf(yIntervals, colliders.size() * 2);
+				xIntervalKeys = Arrays.copyOf(xIntervalKeys, colliders.size() * 2);
+				yIntervalKeys = Arrays.copyOf(yIntervalKeys, colliders.size() * 2);
+			}
+			for (int i = numColliders; i < colliders.size(); i++){
+				xIntervals[numIntervals] = yIntervals[numIntervals] = (i << 1) | 1;
+				numIntervals++;
+				xIntervals[numIntervals] = yIntervals[numIntervals] = i << 1;
+				numIntervals++;
+			}
+			numColliders = colliders.size();
+		}
+
+		if (mode == MODE_TWO_AXIS){
+			//sort both axes and sweep the one with fewer overlapping intervals
+			sortAxis(AXIS_X);
+			sortAxis(AXIS_Y);
+			sweepAxis = countOverlaps(xIntervals, numIntervals) <= countOverlaps(yIntervals, numIntervals) ? AXIS_X : AXIS_Y;
+		}
+		else {
+			if (--framesUntilAxisUpdate <= 0){
+				chooseAxis();
+				framesUntilAxisUpdate = AXIS_UPDATE_INTERVAL;
+			}
+			sortAxis(sweepAxis);
+
+			//the other list goes out of order while it isn't updated
+			if (sweepAxis == AXIS_X){
+				yStale = true;
+			}
+			else {
+				xStale = true;
+			}
+		}
+
+		//find overlapping bounds on the sweep axis, testing the other axis before adding a pair
+		if (sweepAxis == AXIS_X){
+			sweep(xIntervals, numIntervals, colliders.lowerBoundY, colliders.upperBoundY, pairs);
+		}
+		else {
+			sweep(yIntervals, numIntervals, colliders.lowerBoundX, colliders.upperBoundX, pairs);
+		}
+	}
+
+	private int removeIntervals(int[] values, float[] keys){
+		int kept = 0;
+		for (int i = 0; i < numIntervals; i++){
+			if ((values[i] >> 1) < colliders.size()){
+				values[kept] = values[i];
+				keys[kept] = keys[i];
+				kept++;
+			}
+		}
+		return kept;
+	}
+
+	//updates and sorts the endpoint list of an axis
+	private void sortAxis(int axis){
+		if (axis == AXIS_X){
+			if (xStale){
+				FullSort(xIntervalKeys, xIntervals, numIntervals, colliders.lowerBoundX, colliders.upperBoundX);
+				xStale = false;
+			}
+			else {
+				updateKeys(xIntervalKeys, xIntervals, numIntervals, colliders.lowerBoundX, colliders.upperBoundX);
+				InsertionSort(xIntervalKeys, xIntervals, numIntervals);
+			}
+		}
+		else {
+			if (yStale){
+				FullSort(yIntervalKeys, yIntervals, numIntervals, colliders.lowerBoundY, colliders.upperBoundY);
+				yStale = false;
+			}
+			else {
+				updateKeys(yIntervalKeys, yIntervals, numIntervals, colliders.lowerBoundY, colliders.upperBoundY);
+				InsertionSort(yIntervalKeys, yIntervals, numIntervals);
+			}
+		}
+	}
+
+	//sweeps along the axis where collider centers are more spread out
+	private void chooseAxis(){
+		int count = colliders.size();
+		if (count == 0){
+			return;
+		}
+
+		double sumX = 0, sumY = 0, sumXX = 0, sumYY = 0;
+		for (int i = 0; i < count; i++){
+			double x = (colliders.lowerBoundX[i] + colliders.upperBoundX[i]) * 0.5;
+			double y = (colliders.lowerBoundY[i] + colliders.upperBoundY[i]) * 0.5;
+			sumX += x;
+			sumY += y;
+			sumXX += x * x;
+			sumYY += y * y;
+		}
+		double varianceX = sumXX / count - (sumX / count) * (sumX / count);
+		double varianceY = sumYY / count - (sumY / count) * (sumY / count);
+
+		if (sweepAxis == AXIS_X && varianceY > varianceX * AXIS_SWITCH_RATIO){
+			sweepAxis = AXIS_Y;
+		}
+		else if (sweepAxis == AXIS_Y && varianceX > varianceY * AXIS_SWITCH_RATIO){
+			sweepAxis = AXIS_X;
+		}
+	}
+
+	//number of interval pairs overlapping on one axis, without creating them
+	private long countOverlaps(int[] values, int count){
+		long overlapping = 0;
+		int open = 0;
+		for (int i = 0; i < count; i++){
+			if ((values[i] & 1) != 0){
+				overlapping += open;
+				open++;
+			}
+			else {
+				open--;
+			}
+		}
+		return overlapping;
+	}
+
+	private void updateKeys(float[] keys, int[] values, int count, float[] lowerBound, float[] upperBound){
+		for (int i = 0; i < count; i++){
+			int id = values[i] >> 1;
+			keys[i] = (values[i] & 1) != 0 ? lowerBound[id] : upperBound[id];
+		}
+	}
+
+	//sweeps sorted endpoints, adding pairs that also overlap on the other axis
+	private void sweep(int[] values, int count, float[] otherLower, float[] otherUpper, PairBuffer pairs){
+		if (active.length < colliders.size()){
+			active = new int[colliders.size()];
+			activeIndex = new int[colliders.size()];
+		}
+
+		numActive = 0;
+		for (int i = 0; i < count; i++){
+			int id = values[i] >> 1;
+			if ((values[i] & 1) != 0){
+				float lower = otherLower[id];
+				float upper = otherUpper[id];
+
+				for (int j = 0; j < numActive; j++){
+					int other = active[j];
+					if (lower <= otherUpper[other] && otherLower[other] <= upper){
+						pairs.add(id, other);
+					}
+				}
+
+				activeIndex[id] = numActive;
+				active[numActive++] = id;
+			}
+			else {
+				//move the last active collider into the removed slot
+				int index = activeIndex[id];
+				int last = active[--numActive];
+				active[index] = last;
+				activeIndex[last] = index;
+			}
+		}
+	}
+
+	//sorts keys ascending, moving values along with them
+	//on equal keys starts go before ends, so touching intervals count as overlapping
+	static void InsertionSort(float[] keys, int[] values, int count){
+		for (int i = 1; i < count; i++){
+			float key = keys[i];
+			int value = values[i];
+			int j = i - 1;
+			while (j >= 0 && (key < keys[j] || (key == keys[j] && (value & 1) > (values[j] & 1)))){
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			values[j + 1] = value;
+		}
+	}
+
+	private void checkIncremental(PairBuffer pairs){
+		began.clear();
+		ended.clear();
+
+		if (numIncrementalColliders == -1 || incrementalModCount != colliders.getModCount()){
+			rebuildIncremental();
+		}
+		else {
+			updateKeys(xKeys, xEndpoints, numIncrementalColliders * 2, colliders.lowerBoundX, colliders.upperBoundX);
+			updateKeys(yKeys, yEndpoints, numIncrementalColliders * 2, colliders.lowerBoundY, colliders.upperBoundY);
+
+			//swaps between a start and an end add or remove pairs
+			IncrementalSort(xKeys, xEndpoints, numIncrementalColliders * 2);
+			IncrementalSort(yKeys, yEndpoints, numIncrementalColliders * 2);
+		}
+
+		beganPairs.clear();
+		endedPairs.clear();
+		began.toPairBuffer(beganPairs);
+		ended.toPairBuffer(endedPairs);
+
+		overlaps.toPairBuffer(pairs);
+	}
+
+	//insertion sort that updates the overlap set for every start/end swap
+	private void IncrementalSort(float[] keys, int[] values, int count){
+		for (int i = 1; i < count; i++){
+			float key = keys[i];
+			int value = values[i];
+			int j = i - 1;
+			while (j >= 0 && (key < keys[j] || (key == keys[j] && (value & 1) > (values[j] & 1)))){
+				int other = values[j];
+
+				//a start moving below an end may begin an overlap, an end moving below a start ends one
+				if ((value & 1) != (other & 1)){
+					if ((value & 1) != 0){
+						if (colliders.isOverlapping(value >> 1, other >> 1)){
+							addOverlap(PairSet.key(value >> 1, other >> 1));
+						}
+					}
+					else {
+						removeOverlap(PairSet.key(value >> 1, other >> 1));
+					}
+				}
+
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			values[j + 1] = value;
+		}
+	}
+
+	private void addOverlap(long key){
+		//an overlap that ended earlier in the same frame is not an event
+		if (overlaps.add(key) && !ended.remove(key)){
+			began.add(key);
+		}
+	}
+
+	private void removeOverlap(long key){
+		if (overlaps.remove(key) && !began.remove(key)){
+			ended.add(key);
+		}
+	}
+
+	//builds both endpoint lists and the overlap set from scratch when colliders are added or removed
+	private void rebuildIncremental(){
+		int count = colliders.size() * 2;
+		if (xEndpoints.length < count){
+			xEndpoints = new int[count];
+			yEndpoints = new int[count];
+			xKeys = new float[count];
+			yKeys = new float[count];
+			sortScratch = new long[count];
+		}
+
+		for (int i = 0; i < colliders.size(); i++){
+			xEndpoints[i * 2] = yEndpoints[i * 2] = (i << 1) | 1;
+			xEndpoints[i * 2 + 1] = yEndpoints[i * 2 + 1] = i << 1;
+		}
+
+		FullSort(xKeys, xEndpoints, count, colliders.lowerBoundX, colliders.upperBoundX);
+		FullSort(yKeys, yEndpoints, count, colliders.lowerBoundY, colliders.upperBoundY);
+
+		//find the current pairs with a full sweep
+		rebuildPairs.clear();
+		sweep(xEndpoints, count, colliders.lowerBoundY, colliders.upperBoundY, rebuildPairs);
+
+		PairSet previous = overlaps;
+		overlaps = previousOverlaps;
+		previousOverlaps = previous;
+
+		overlaps.clear();
+		for (int i = 0; i < rebuildPairs.size(); i++){
+			overlaps.add(rebuildPairs.getA(i), rebuildPairs.getB(i));
+		}
+
+		//report the differences to the previous set as events
+		for (int i = 0; i < previous.getCapacity(); i++){
+			long key = previous.getKey(i);
+			if (key != -1 && !overlaps.contains(key)){
+				ended.add(key);
+			}
+		}
+		for (int i = 0; i < rebuildPairs.size(); i++){
+			if (!previous.contains(rebuildPairs.getA(i), rebuildPairs.getB(i))){
+				began.add(rebuildPairs.getA(i), rebuildPairs.getB(i));
+			}
+		}
+		previous.clear();
+
+		numIncrementalColliders = colliders.size();
+		incrementalModCount = colliders.getModCount();
+	}
+
+	//sorts endpoints from scratch by packing key and value into longs
+	//the key bits are flipped so negative floats order correctly as signed ints
+	private void FullSort(float[] keys, int[] values, int count, float[] lowerBound, float[] upperBound){
+		if (sortScratch.length < count){
+			sortScratch = new long[count];
+		}
+
+		for (int i = 0; i < count; i++){
+			int id = values[i] >> 1;
+			boolean start = (values[i] & 1) != 0;
+			int bits = Float.floatToIntBits(start ? lowerBound[id] : upperBound[id]);
+			bits ^= (bits >> 31) & 0x7fffffff;
+
+			//ends get the high bit of the low word so starts go first on equal keys
+			sortScratch[i] = ((long)bits << 32) | (start ? 0 : 0x80000000L) | id;
+		}
+
+		Arrays.sort(sortScratch, 0, count);
+
+		for (int i = 0; i < count; i++){
+			int id = (int)(sortScratch[i] & 0x7fffffff);
+			boolean start = (sortScratch[i] & 0x80000000L) == 0;
+			values[i] = start ? (id << 1) | 1 : id << 1;
+			keys[i] = start ? lowerBound[id] : upperBound[id];
+		}
+	}
+
+	//pairs that started overlapping during the last incremental check
+	public PairBuffer getBeganPairs(){
+		return beganPairs;
+	}
+
+	//pairs that stopped overlapping during the last incremental check
+	public PairBuffer getEndedPairs(){
+		return endedPairs;
+	}
+
+	//axis the last check swept along, incremental mode always sweeps x
+	public int getSweepAxis(){
+		return mode == MODE_INCREMENTAL ? AXIS_X : sweepAxis;
+	}
+
+	public int getIntervalCount(){
+		return mode == MODE_INCREMENTAL ? Math.max(numIncrementalColliders, 0) * 2 : numIntervals;
+	}
+
+	//interval endpoint on the sweep axis
+	public float getInterval(int i){
+		if (mode == MODE_INCREMENTAL){
+			return xKeys[i];
+		}
+		return sweepAxis == AXIS_X ? xIntervalKeys[i] : yIntervalKeys[i];
+	}
+}
@@ -1,105 +1,86 @@
-package main;
-
-/**
- * Collider.java
- * 
- * Square collider object with position, size, velocity, and AABB.
- * 
- * @author Daniel
- *
- */
-public class Collider{
-	
-	private float x, y;
-	private final float size;
-	
-	private float velX, velY;
-	
-	private AABB aabb;
-	
-	private boolean collided;
-	
-	
-	public Collider(float x, float y, float size, float velX, float velY){
-		this.x = x;
-		this.y = y;
-		this.size = size;
-		this.velX = velX;
-		this.velY = velY;
-		
-		aabb = new AABB();
-		
-		updateAABB();
-	}
-	
-	public void update(){
-		
-		// Update position
-		x += velX;
-		y += velY;
-		
-		updateAABB();
-		
-		// Reset collided bool
-		collided = false;
-	}
-	
-	private void updateAABB(){
-
-		// Update AABB
-		aabb.lowerBoundX = x - (size / 2);
-		aabb.lowerBoundY = y - (size / 2);
-		
-		aabb.upperBoundX = x + (size / 2);
-		aabb.upperBoundY = y + (size / 2);
-	}
-
-	
-	public void setX(float x){
-		this.x = x;
-	}
-	
-	public float getX(){
-		return x;
-	}
-	
-	public void setY(float y){
-		this.y = y;
-	}
-	
-	public float getY(){
-		return y;
-	}
-	
-	public float getSize(){
-		return size;
-	}
-	
-	public void setVelX(float velX){
-		this.velX = velX;
-	}
-	
-	public float getVelX(){
-		return velX;
-	}
-	
-	public void setVelY(float velY){
-		this.velY = velY;
-	}
-	
-	public float getVelY(){
-		return velY;
-	}
-	
-	public AABB getAABB(){
-		return aabb;
-	}
-	
-	public void setCollided(){
-		collided = true;
-	}
-	
-	public boolean collided(){
-		return collided;
-	}
-}
+package main;
+
+/**
+ * Collider.java
+ * 
+ * Square collider object with position, size, velocity, and AABB.
+ * The collider data lives in a ColliderStore, this object is only a handle to its id.
+ * 
+ * @author Daniel
+ *
+ */
+public class Collider{
+	
+	private final ColliderStore store;
+	
+	// Index into the store arrays, updated by the store when colliders are removed
+	int id;
+	
+	
+	Collider(ColliderStore store, int id){
+		this.store = store;
+		this.id = id;
+	}
+	
+	public void update(){
+		store.update(id);
+	}
+	
+	public int getId(){
+		return id;
+	}
+	
+	public void setX(float x){
+		store.x[id] = x;
+	}
+	
+	public float getX(){
+		return store.x[id];
+	}
+	
+	public void setY(float y){
+		store.y[id] = y;
+	}
+	
+	public float getY(){
+		return store.y[id];
+	}
+	
+	public float getSize(){
+		return store.size[id];
+	}
+	
+	public void setVelX(float velX){
+		store.velX[id] = velX;
+	}
+	
+	public float getVelX(){
+		return store.velX[id];
+	}
+	
+	public void setVelY(float velY){
+		store.velY[id] = velY;
+	}
+	
+	public float getVelY(){
+		return store.velY[id];
+	}
+	
+	// Copy of the current AABB
+	public AABB getAABB(){
+		AABB aabb = new AABB();
+		aabb.lowerBoundX = store.lowerBoundX[id];
+		aabb.lowerBoundY = store.lowerBoundY[id];
+		aabb.upperBoundX = store.upperBoundX[id];
+		aabb.upperBoundY = store.upperBoundY[id];
+		return aabb;
+	}
+	
+	public void setCollided(){
+		store.collided[id] = true;
+	}
+	
+	public boolean collided(){
+		return store.collided[id];
+	}
+}
@@ -0,0 +1,200 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * ColliderStore.java
+ *
+ * Structure-of-arrays storage for colliders. Positions, velocities, sizes and AABB bounds are kept in
+ * parallel primitive arrays indexed by collider id, and Collider objects are only handles into them.
+ * Removing a collider moves the last collider into the freed slot, so ids always range from 0 to size() - 1.
+ *
+ * The arrays are package-private so collision checkers can read them directly. They are replaced when
+ * the store grows, so they should not be kept between calls.
+ *
+ * @author Daniel
+ *
+ */
+public class ColliderStore{
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	// Position and size
+	float[] x, y;
+	float[] size;
+	
+	// Velocity
+	float[] velX, velY;
+	
+	// Position before the last update, where each collider's swept AABB starts
+	float[] prevX, prevY;
+	
+	// AABB bounds
+	float[] lowerBoundX, lowerBoundY;
+	float[] upperBoundX, upperBoundY;
+	
+	boolean[] collided;
+	
+	// Handle for each id
+	private Collider[] handles;
+	
+	private int count;
+	
+	// Incremented whenever colliders are added or removed
+	private int modCount;
+	
+	
+	public ColliderStore(){
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public ColliderStore(int capacity){
+		capacity = Math.max(capacity, 1);
+		
+		x = new float[capacity];
+		y = new float[capacity];
+		size = new float[capacity];
+		velX = new float[capacity];
+		velY = new float[capacity];
+		prevX = new float[capacity];
+		prevY = new float[capacity];
+		lowerBoundX = new float[capacity];
+		lowerBoundY = new float[capacity];
+		upperBoundX = new float[capacity];
+		upperBoundY = new float[capacity];
+		collided = new boolean[capacity];
+		handles = new Collider[capacity];
+	}
+	
+	public Collider add(float x, float y, float size, float velX, float velY){
+		
+		if(count == this.x.length)
+			grow();
+		
+		int id = count++;
+		modCount++;
+		
+		this.x[id] = x;
+		this.y[id] = y;
+		this.size[id] = size;
+		this.velX[id] = velX;
+		this.velY[id] = velY;
+		prevX[id] = x;
+		prevY[id] = y;
+		collided[id] = false;
+		
+		handles[id] = new Collider(this, id);
+		
+		updateAABB(id);
+		
+		return handles[id];
+	}
+	
+	// Remove a collider, moving the last collider into its id
+	public void remove(Collider c){
+		
+		int id = c.id;
+		int last = --count;
+		modCount++;
+		
+		if(id != last){
+			x[id] = x[last];
+			y[id] = y[last];
+			size[id] = size[last];
+			velX[id] = velX[last];
+			velY[id] = velY[last];
+			prevX[id] = prevX[last];
+			prevY[id] = prevY[last];
+			lowerBoundX[id] = lowerBoundX[last];
+			lowerBoundY[id] = lowerBoundY[last];
+			upperBoundX[id] = upperBoundX[last];
+			upperBoundY[id] = upperBoundY[last];
+			collided[id] = collided[last];
+			
+			handles[id] = handles[last];
+			handles[id].id = id;
+		}
+		
+		handles[last] = null;
+		c.id = -1;
+	}
+	
+	private void grow(){
+		int capacity = x.length * 2;
+		
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		size = Arrays.copyOf(size, capacity);
+		velX = Arrays.copyOf(velX, capacity);
+		velY = Arrays.copyOf(velY, capacity);
+		prevX = Arrays.copyOf(prevX, capacity);
+		prevY = Arrays.copyOf(prevY, capacity);
+		lowerBoundX = Arrays.copyOf(lowerBoundX, capacity);
+		lowerBoundY = Arrays.copyOf(lowerBoundY, capacity);
+		upperBoundX = Arrays.copyOf(upperBoundX, capacity);
+		upperBoundY = Arrays.copyOf(upperBoundY, capacity);
+		collided = Arrays.copyOf(collided, capacity);
+		handles = Arrays.copyOf(handles, capacity);
+	}
+	
+	// Update all collider positions
+	public void update(){
+		for(int i = 0; i < count; i++)
+			update(i);
+	}
+	
+	void update(int id){
+		
+		// Update position
+		prevX[id] = x[id];
+		prevY[id] = y[id];
+		x[id] += velX[id];
+		y[id] += velY[id];
+		
+		updateAABB(id);
+		
+		// Reset collided bool
+		collided[id] = false;
+	}
+	
+	void updateAABB(int id){
+		float hs = size[id] / 2;
+		
+		lowerBoundX[id] = x[id] - hs;
+		lowerBoundY[id] = y[id] - hs;
+		upperBoundX[id] = x[id] + hs;
+		upperBoundY[id] = y[id] + hs;
+	}
+	
+	public boolean isOverlapping(int a, int b){
+		if(	lowerBoundX[a] > upperBoundX[b] || lowerBoundY[a] > upperBoundY[b] ||
+			lowerBoundX[b] > upperBoundX[a] || lowerBoundY[b] > upperBoundY[a])
+			return false;
+		
+		return true;
+	}
+	
+	public boolean isOverlappingY(int a, int b){
+		if(lowerBoundY[a] > upperBoundY[b] || lowerBoundY[b] > upperBoundY[a])
+			return false;
+		
+		return true;
+	}
+	
+	public Collider get(int id){
+		return handles[id];
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	public boolean isEmpty(){
+		return count == 0;
+	}
+	
+	// Lets checkers that keep state between frames detect added or removed colliders
+	public int getModCount(){
+		return modCount;
+	}
+}
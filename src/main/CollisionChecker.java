@@ -1,22 +1,61 @@
-package main;
-
-import java.util.ArrayList;
-
-/**
- * CollisionChecker.java
- * 
- * Abstract class to inherit from when creating a collision checking algorithm.
- * 
- * @author Daniel
- *
- */
-public abstract class CollisionChecker{
-	
-	protected ArrayList<Collider> colliders;
-	
-	public CollisionChecker(ArrayList<Collider> colliders){
-		this.colliders = colliders;
-	}
-	
-	public abstract ArrayList<Collision> checkCollisions();
-}
+package main;
+
+import java.util.ArrayList;
+
+/**
+ * CollisionChecker.java
+ * 
+ * Abstract class to inherit from when creating a collision checking algorithm.
+ * 
+ * @author Daniel
+ *
+ */
+public abstract class CollisionChecker{
+	
+	protected ColliderStore colliders;
+	
+	// Names of the variants of the algorithm, if it has more than one
+	private final String[] modeNames;
+	
+	// Current variant
+	protected int mode;
+	
+	public CollisionChecker(ColliderStore colliders, String... modeNames){
+		this.colliders = colliders;
+		this.modeNames = modeNames;
+	}
+	
+	public void setMode(int mode){
+		this.mode = mode;
+	}
+	
+	public int getMode(){
+		return mode;
+	}
+	
+	public int getModeCount(){
+		return Math.max(modeNames.length, 1);
+	}
+	
+	// Name of the current variant, null if the algorithm only has one
+	public String getModeName(){
+		return modeNames.length == 0 ? null : modeNames[mode];
+	}
+	
+	// Append the ids of all overlapping collider pairs to the buffer without allocating
+	public abstract void checkCollisions(PairBuffer pairs);
+	
+	// Return all overlapping collider pairs as Collision objects
+	public ArrayList<Collision> checkCollisions(){
+		
+		PairBuffer pairs = new PairBuffer();
+		checkCollisions(pairs);
+		
+		ArrayList<Collision> collisions = new ArrayList<Collision>(pairs.size());
+		
+		for(int i = 0; i < pairs.size(); i++)
+			collisions.add(new Collision(colliders.get(pairs.getA(i)), colliders.get(pairs.getB(i))));
+		
+		return collisions;
+	}
+}
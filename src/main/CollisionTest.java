@@ -1,429 +1,688 @@
-package main;
-
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.util.ArrayList;
-import java.util.Random;
-
-import main.CCBoundingVolumeHierarchy.Node;
-
-/**
- * CollisionTest.java
- * 
- * Contains the main update and draw code for the program.
- * 
- * @author Daniel
- *
- */
-public class CollisionTest{
-	
-	// Offsets to correct drawing position
-	private final int DRAW_OFFSET_X = 8;
-	private final int DRAW_OFFSET_Y = 31;
-	
-	// Bounds for collider region
-	private final int REGION_SIZE_X = 100000;
-	private final int REGION_SIZE_Y = 100000;
-	//private final int REGION_SIZE_INC = 1000;
-	
-	// Collider properties
-	private final float COLLIDER_SIZE = 80;
-	private final float COLLIDER_VEL_MIN = 2;
-	private final float COLLIDER_VEL_MAX = 3;
-	
-	// Number of colliders to start with
-	private final int COLLIDER_INITIAL_COUNT = 1000;
-	private final int COLLIDER_MIN_COUNT = 2;
-	
-	// Number of colliders to add/remove at a time
-	private final int COLLIDER_INCREMENT_COUNT = 10000;
-	private final int COLLIDER_INCREMENT_MULT = 2;
-	private final boolean COLLIDER_INC_USE_MULT = false;
-	
-	// Zoom factor and range
-	private final float ZOOM_FACTOR = 1.2f;
-	private final float ZOOM_MIN = 0.001f;
-	private final float ZOOM_MAX = 5f;
-	
-	
-	// Frame time for update/draw loop
-	private long frameTime;
-	
-	// Time taken for checking collisions
-	private float updateTimeMs;
-	
-	
-	// Colliders
-	private ArrayList<Collider> colliders;
-	
-	// Collision checkers
-	private CollisionChecker ccCurrent;
-	private CCBruteForce ccBruteForce;
-	private CCSweepAndPrune ccSweepAndPrune;
-	private CCBoundingVolumeHierarchy ccBoundingVolumeHierarchy;
-	
-	private final String[] ALG_NAMES = {"Brute Force", "Sweep and Prune", "Bounding Volume Hierarchy"};
-	
-	// Current algorithm name
-	String algName;
-	
-	
-	
-	// Random number generator
-	private Random random;
-	
-	// Region bounds
-	private int regionSizeX;
-	private int regionSizeY;
-	
-	
-	// Camera position / zoom level
-	private float camX, camY, zoom;
-	
-	// Mouse position
-	private int mx, my;
-	
-	// Window half width / half height
-	private int winHw, winHh;
-	
-	// Draw algorithm workings
-	boolean debugDraw;
-	
-	private int colorMode;
-	private int rTime;
-	
-	
-	public void init(){
-		
-		// Initialize RNG
-		random = new Random();
-		
-		// Initialize collider ArrayList
-		colliders = new ArrayList<Collider>(COLLIDER_INITIAL_COUNT);
-		
-		// Initialize collision checker objects
-		ccBruteForce				= new CCBruteForce(colliders);
-		ccSweepAndPrune				= new CCSweepAndPrune(colliders);
-		ccBoundingVolumeHierarchy	= new CCBoundingVolumeHierarchy(colliders);
-		
-		// Set default algorithm
-		ccCurrent = ccBoundingVolumeHierarchy;
-		algName = ALG_NAMES[2];
-		
-		// Set default region size
-		regionSizeX = REGION_SIZE_X;
-		regionSizeY = REGION_SIZE_Y;
-		
-		// Add initial colliders
-		addColliders(COLLIDER_INITIAL_COUNT);
-		
-		// Set default zoom
-		zoom = ZOOM_MIN;
-		
-		debugDraw = false;
-	}
-	
-	public void update(){
-		updateInputs();
-		updateColliders();
-		
-		if(ccCurrent == ccBoundingVolumeHierarchy)
-			ccBoundingVolumeHierarchy.update();
-	}
-	
-	private void updateInputs(){
-		
-		// Zoom
-		int mouseScroll = InputListener.getMouseScroll();
-
-		if(mouseScroll < 0)			zoom *= Math.pow(ZOOM_FACTOR, -mouseScroll);
-		else if(mouseScroll > 0)	zoom /= Math.pow(ZOOM_FACTOR, mouseScroll);
-		
-		// Constrain zoom
-		if(zoom >= ZOOM_MAX)	zoom = ZOOM_MAX;
-		if(zoom <= ZOOM_MIN)	zoom = ZOOM_MIN;
-		
-		
-		// Update mouse position, keeping old position
-		int mxPrev = mx;
-		int myPrev = my;
-		
-		mx = InputListener.getMouseX();
-		my = InputListener.getMouseY();
-		
-		// Camera dragging
-		if(InputListener.isMouseDown()){
-			camX += (mxPrev - mx) / zoom;
-			camY += (myPrev - my) / zoom;
-			
-			// Constrain to region boundary
-			if(camX < -regionSizeX / 2f)	camX = -regionSizeX / 2f;
-			if(camX > regionSizeX / 2f)		camX = regionSizeX / 2f;
-			if(camY < -regionSizeY / 2f)	camY = -regionSizeY / 2f;
-			if(camY > regionSizeY / 2f)		camY = regionSizeY / 2f;
-		}
-		
-		
-		// Set algorithm
-		if(InputListener.isKeyTyped(0)){
-			ccCurrent = ccBruteForce;
-			algName = ALG_NAMES[0];
-		}
-		else if(InputListener.isKeyTyped(1)){
-			ccCurrent = ccSweepAndPrune;
-			algName = ALG_NAMES[1];
-		}
-		else if(InputListener.isKeyTyped(2)){
-			ccCurrent = ccBoundingVolumeHierarchy;
-			algName = ALG_NAMES[2];
-		}
-		
-		// Add / remove colliders
-		if(InputListener.isKeyTyped(3)){
-			
-			if(!COLLIDER_INC_USE_MULT)
-				addColliders(COLLIDER_INCREMENT_COUNT);
-			else
-				addColliders((colliders.size() * COLLIDER_INCREMENT_MULT) - colliders.size());
-			
-			//regionSizeX += REGION_SIZE_INC;
-			//regionSizeY += REGION_SIZE_INC;
-		}
-		else if(InputListener.isKeyTyped(4)){
-			
-			if(!COLLIDER_INC_USE_MULT)
-				removeColliders(COLLIDER_INCREMENT_COUNT);
-			else
-				removeColliders(colliders.size() - (colliders.size() / COLLIDER_INCREMENT_MULT));
-			
-			//regionSizeX -= REGION_SIZE_INC;
-			//regionSizeY -= REGION_SIZE_INC;
-			
-			// Minimum count
-			if(colliders.size() < COLLIDER_MIN_COUNT)
-				addColliders(COLLIDER_MIN_COUNT - colliders.size());
-		}
-		
-		if(InputListener.isKeyTyped(5))
-			debugDraw = !debugDraw;
-		
-		if(InputListener.isKeyTyped(6)){
-			colorMode++;
-			
-			if(colorMode > 1)
-				colorMode = 0;
-		}
-	}
-	
-	private void updateColliders(){
-		
-		// Update all collider positions and check collision with region boundary
-		for(Collider c : colliders){
-			c.update();
-			
-			// Check boundary collision and set velocity to 'bounce' object off boundary
-			if(c.getX() - (c.getSize() / 2) < -regionSizeX / 2f || c.getX() + (c.getSize() / 2) > regionSizeX / 2f)
-				c.setVelX(-c.getVelX());
-			
-			if(c.getY() - (c.getSize() / 2) < -regionSizeY / 2f || c.getY() + (c.getSize() / 2) > regionSizeY / 2f)
-				c.setVelY(-c.getVelY());
-		}
-		
-		// Check collisions using selected collision checker
-		long timeBefore = System.nanoTime();
-		ArrayList<Collision> collisions = ccCurrent.checkCollisions();
-		
-		// Calculate collision check time
-		updateTimeMs = (System.nanoTime() - timeBefore) / 1000000f;
-		
-		
-		// Resolve collisions using a basic elastic collision formula
-		// Not strictly necessary since we only care about the collision detection itself but
-		// it makes it much more fun
-		for(Collision c : collisions){
-
-			Collider c1 = c.collider1;
-			Collider c2 = c.collider2;
-			c1.setCollided();
-			c2.setCollided();
-			
-			// Collider velocities
-			float vx1 = c1.getVelX();
-			float vy1 = c1.getVelY();
-			float vx2 = c2.getVelX();
-			float vy2 = c2.getVelY();
-			
-			// Collider velocity magnitudes
-			float v1 = (float)Math.hypot(vx1, vy1);
-			float v2 = (float)Math.hypot(vx2, vy2);
-			
-			// Collider directions
-			float dir1 = (float)Math.atan2(c1.getVelY(), c1.getVelX());
-			float dir2 = (float)Math.atan2(c2.getVelY(), c2.getVelX());
-			
-			// Angle between colliders
-			float ang = (float)Math.atan2(c2.getY() - c1.getY(), c2.getX() - c1.getX());
-			
-			// Set new velocities
-			c1.setVelX((float)(v2 * Math.cos(dir2 - ang) * Math.cos(ang) + v1 * Math.sin(dir1 - ang) * Math.sin(ang)));
-			c1.setVelY((float)(v2 * Math.cos(dir2 - ang) * Math.sin(ang) + v1 * Math.sin(dir1 - ang) * Math.cos(ang)));
-			
-			c2.setVelX((float)(v1 * Math.cos(dir1 - ang) * Math.cos(ang) + v2 * Math.sin(dir2 - ang) * Math.sin(ang)));
-			c2.setVelY((float)(v1 * Math.cos(dir1 - ang) * Math.sin(ang) + v2 * Math.sin(dir2 - ang) * Math.cos(ang)));
-			
-			// Force conservation of momentum with slight damping
-			float m = 0.98f * (float)((v1 + v2) / (Math.hypot(c1.getVelX(), c1.getVelY()) + Math.hypot(c2.getVelX(), c2.getVelY())));
-			c1.setVelX(c1.getVelX() * m);
-			c1.setVelY(c1.getVelY() * m);
-			c2.setVelX(c2.getVelX() * m);
-			c2.setVelY(c2.getVelY() * m);
-			
-			// Extra force to push stuck objects away from each other
-			final float efm = 0.25f;
-			c1.setVelX(c1.getVelX() - efm * (float)Math.cos(ang));
-			c1.setVelY(c1.getVelY() - efm * (float)Math.sin(ang));
-			c2.setVelX(c2.getVelX() + efm * (float)Math.cos(ang));
-			c2.setVelY(c2.getVelY() + efm * (float)Math.sin(ang));
-		}
-	}
-	
-	private void addColliders(int num){
-		for(int i = 0; i < num; i++){
-			
-			// Get random position, adjusting for collider size
-			float x = (random.nextFloat() * (regionSizeX - COLLIDER_SIZE * 2)) - regionSizeX / 2f + COLLIDER_SIZE;
-			float y = (random.nextFloat() * (regionSizeY - COLLIDER_SIZE * 2)) - regionSizeY / 2f + COLLIDER_SIZE;
-			
-			// Get random velocity and direction
-			float vel = (random.nextFloat() * (COLLIDER_VEL_MAX - COLLIDER_VEL_MIN)) + COLLIDER_VEL_MIN;
-			float dir = random.nextFloat() * 2 * (float)Math.PI;
-			
-			// Add collider
-			Collider c = new Collider(x, y, COLLIDER_SIZE, vel * (float)Math.cos(dir), vel * (float)Math.sin(dir));
-			colliders.add(c);
-			ccBoundingVolumeHierarchy.add(c);
-		}
-		ccBoundingVolumeHierarchy.update();
-	}
-	
-	private void removeColliders(int num){
-		
-		for(int i = 0; i < num; i++){
-			if(colliders.isEmpty())
-				return;
-			
-			ccBoundingVolumeHierarchy.remove(colliders.get(colliders.size() - 1));
-			colliders.remove(colliders.size() - 1);
-		}
-		ccBoundingVolumeHierarchy.update();
-	}
-	
-	public void draw(Graphics2D g, int winWidth, int winHeight){
-		
-		// Note: Drawing with BufferStrategy offsets the drawing positions, so the top left corner is at (8, 31) rather than (0, 0)
-		// This behavior may not be platform-independent
-		
-		// Window half width / half height for camera space conversion
-		winHw = winWidth / 2;
-		winHh = winHeight / 2;
-		
-		// Fill background
-		g.setColor(Color.BLACK);
-		g.fillRect(DRAW_OFFSET_X, DRAW_OFFSET_Y, winWidth, winHeight);
-		
-		// Draw colliders
-		
-		for(int i = 0; i < colliders.size(); i++){
-			
-			Collider c = colliders.get(i);
-			
-			switch(colorMode){
-			case 0:
-				g.setColor(c.collided() ? Color.YELLOW : Color.RED);
-				break;
-			
-			case 1:
-				// Rainbow uwu
-				g.setColor(c.collided() ? Color.WHITE : Color.getHSBColor((float)(rTime / 1000f + Math.atan2(c.getY(), c.getX()) / Math.PI), 1, 1));
-				break;
-			}
-			
-			// Get zoomed size and set to 1 if <1 so colliders will always be visible 
-			int size = (int)(c.getSize() * zoom);
-			size = size == 0 ? 1 : size;
-			
-			g.fillRect(toCameraSpaceX(c.getX()) - (size / 2), toCameraSpaceY(c.getY()) - (size / 2), size, size);
-		}
-		
-		
-		// Debug draw
-		if(debugDraw){
-			if(ccCurrent == ccSweepAndPrune){
-				
-				// Draw x intervals
-				ArrayList<ColliderInterval> intervals = ccSweepAndPrune.getIntervals();
-				
-				final int sizeY = 100;
-				g.setColor(Color.BLUE);
-				
-				for(ColliderInterval i : intervals)
-					g.fillRect(toCameraSpaceX(i.interval), toCameraSpaceY(regionSizeY / 2f), 1, sizeY);
-			}
-			else if(ccCurrent == ccBoundingVolumeHierarchy){
-				Node root = ccBoundingVolumeHierarchy.getRoot();
-				drawBVHTree(g, root);
-			}
-		}
-		
-
-		// Draw region boundary
-		g.setColor(Color.GRAY);
-		g.drawRect(toCameraSpaceX(-regionSizeX / 2f), toCameraSpaceY(-regionSizeY / 2f), (int)(regionSizeX * zoom), (int)(regionSizeY * zoom));
-		
-		
-		// Draw info
-		g.setColor(Color.WHITE);
-		g.drawString("FPS: " + (frameTime == 0 ? "" : (String.format("%.2f", 1000000000d / frameTime))), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 15);
-		g.drawString("Colliders: " + colliders.size(), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 35);
-		g.drawString("Algorithm: " + algName, DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 55);
-		g.drawString("Collision update time (ms): " + String.format("%.2f", updateTimeMs), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 75);
-		
-		rTime++;
-		
-	}
-	
-	private int toCameraSpaceX(float x){
-		return DRAW_OFFSET_X + winHw + (int)((x - camX) * zoom);
-	}
-	
-	private int toCameraSpaceY(float y){
-		return DRAW_OFFSET_X + winHh + (int)((y - camY) * zoom);
-	}
-	
-	private void drawBVHTree(Graphics2D g, Node node){
-		
-		// Draw margin AABB for leaf nodes
-		AABB aabb = node.isLeaf() ? node.aabbMargin : node.aabb;
-		g.setColor(node.isLeaf() ? Color.ORANGE : Color.BLUE);
-		
-		// Get sizes
-		int sizeX = (int)((aabb.upperBoundX - aabb.lowerBoundX) * zoom);
-		int sizeY = (int)((aabb.upperBoundY - aabb.lowerBoundY) * zoom);
-		sizeX = sizeX == 0 ? 1 : sizeX;
-		sizeY = sizeY == 0 ? 1 : sizeY;
-		
-		// Draw
-		g.drawRect(toCameraSpaceX(aabb.lowerBoundX), toCameraSpaceY(aabb.lowerBoundY), sizeX, sizeY);
-		
-		
-		// Draw children
-		if(!node.isLeaf()){
-			drawBVHTree(g, node.left);
-			drawBVHTree(g, node.right);
-		}
-	}
-	
-	public void setFrameTime(long frameTime){
-		this.frameTime = frameTime;
-	}
-}
+package main;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.util.Random;
+
+/**
+ * CollisionTest.java
+ * 
+ * Contains the main update and draw code for the program.
+ * 
+ * @author Daniel
+ *
+ */
+public class CollisionTest{
+	
+	// Offsets to correct drawing position
+	private final int DRAW_OFFSET_X = 8;
+	private final int DRAW_OFFSET_Y = 31;
+	
+	// Bounds for collider region
+	private final int REGION_SIZE_X = 100000;
+	private final int REGION_SIZE_Y = 100000;
+	//private final int REGION_SIZE_INC = 1000;
+	
+	// Collider properties
+	private final float COLLIDER_SIZE = 80;
+	private final float COLLIDER_SIZE_MIN = 10;
+	private final float COLLIDER_SIZE_MAX = 2000;
+	private final float COLLIDER_VEL_MIN = 2;
+	private final float COLLIDER_VEL_MAX = 3;
+	
+	// Number of colliders to start with
+	private final int COLLIDER_INITIAL_COUNT = 1000;
+	private final int COLLIDER_MIN_COUNT = 2;
+	
+	// Number of colliders to add/remove at a time
+	private final int COLLIDER_INCREMENT_COUNT = 10000;
+	private final int COLLIDER_INCREMENT_MULT = 2;
+	private final boolean COLLIDER_INC_USE_MULT = false;
+	
+	// Zoom factor and range
+	private final float ZOOM_FACTOR = 1.2f;
+	private final float ZOOM_MIN = 0.001f;
+	private final float ZOOM_MAX = 5f;
+	
+	
+	// Frame time for update/draw loop
+	private long frameTime;
+	
+	// Time taken for checking collisions
+	private long updateTimeNs;
+	
+	// Number of collisions found in the last update
+	private int collisionCount;
+	
+	// Time taken for resolving collisions
+	private long resolveTimeNs;
+	
+	
+	// Colliders
+	private ColliderStore colliders;
+	
+	// Colliding pairs found in the last update, reused every frame
+	private PairBuffer pairs;
+	
+	// Contacts kept between frames, so persisting contacts are not fully resolved again
+	private ContactManager contacts;
+	
+	// Resolve pairs in parallel batches where no collider appears twice
+	private BatchResolver batchResolver;
+	private final BatchResolver.Job resolveJob = this::resolvePair;
+	private boolean parallelResolve;
+	
+	// Collision checkers
+	private CollisionChecker ccCurrent;
+	private CCBruteForce ccBruteForce;
+	private CCSweepAndPrune ccSweepAndPrune;
+	private CCBoundingVolumeHierarchy ccBoundingVolumeHierarchy;
+	private CCSpatialHash ccSpatialHash;
+	private CCLinearBoundingVolumeHierarchy ccLinearBoundingVolumeHierarchy;
+	private CCLooseQuadtree ccLooseQuadtree;
+	private CCHierarchicalGrid ccHierarchicalGrid;
+	private CCCellList ccCellList;
+	private CCContinuous ccContinuous;
+	
+	// All collision checkers, in the same order as ALG_NAMES
+	private CollisionChecker[] checkers;
+	
+	private final String[] ALG_NAMES = {"Brute Force", "Sweep and Prune", "Bounding Volume Hierarchy", "Spatial Hash", "Linear Bounding Volume Hierarchy", "Loose Quadtree", "Hierarchical Grid", "Cell List", "Continuous Sweep and Prune"};
+	
+	// Current algorithm name
+	String algName;
+	
+	
+	
+	// Random number generator
+	private Random random;
+	
+	// Region bounds
+	private int regionSizeX;
+	private int regionSizeY;
+	
+	
+	// Camera position / zoom level
+	private float camX, camY, zoom;
+	
+	// Mouse position
+	private int mx, my;
+	
+	// Window half width / half height
+	private int winHw, winHh;
+	
+	// Draw algorithm workings
+	boolean debugDraw;
+	
+	private int colorMode;
+	
+	// Spawn colliders with sizes from COLLIDER_SIZE_MIN to COLLIDER_SIZE_MAX instead of COLLIDER_SIZE
+	private boolean mixedSizes;
+	private int rTime;
+	
+	
+	public void init(){
+		init(System.nanoTime(), REGION_SIZE_X, REGION_SIZE_Y, COLLIDER_INITIAL_COUNT);
+	}
+	
+	// Initialize with a fixed seed and scenario, used directly by the headless Benchmark
+	public void init(long seed, int regionSizeX, int regionSizeY, int colliderCount){
+		
+		// Initialize RNG
+		random = new Random(seed);
+		
+		// Initialize collider store
+		colliders = new ColliderStore(colliderCount);
+		pairs = new PairBuffer();
+		contacts = new ContactManager(colliders);
+		batchResolver = new BatchResolver();
+		
+		// Initialize collision checker objects
+		ccBruteForce						= new CCBruteForce(colliders);
+		ccSweepAndPrune						= new CCSweepAndPrune(colliders);
+		ccBoundingVolumeHierarchy			= new CCBoundingVolumeHierarchy(colliders);
+		ccSpatialHash						= new CCSpatialHash(colliders, COLLIDER_SIZE);
+		ccLinearBoundingVolumeHierarchy		= new CCLinearBoundingVolumeHierarchy(colliders);
+		ccLooseQuadtree						= new CCLooseQuadtree(colliders, regionSizeX, regionSizeY);
+		ccHierarchicalGrid					= new CCHierarchicalGrid(colliders, COLLIDER_SIZE_MIN);
+		ccCellList							= new CCCellList(colliders, COLLIDER_SIZE);
+		ccContinuous						= new CCContinuous(colliders, CCSweepAndPrune::new);
+		
+		checkers = new CollisionChecker[]{ccBruteForce, ccSweepAndPrune, ccBoundingVolumeHierarchy, ccSpatialHash, ccLinearBoundingVolumeHierarchy, ccLooseQuadtree, ccHierarchicalGrid, ccCellList, ccContinuous};
+		
+		// Set default algorithm
+		setAlgorithm(2);
+		
+		// Set region size
+		this.regionSizeX = regionSizeX;
+		this.regionSizeY = regionSizeY;
+		
+		// Add initial colliders
+		addColliders(colliderCount);
+		
+		// Set default zoom
+		zoom = ZOOM_MIN;
+		
+		debugDraw = false;
+	}
+	
+	public void update(){
+		updateInputs();
+		step();
+	}
+	
+	// Advance the simulation by one frame without reading any input
+	public void step(){
+		updateColliders();
+	}
+	
+	public void setAlgorithm(int i){
+		ccCurrent = checkers[i];
+		algName = ALG_NAMES[i];
+		
+		if(ccCurrent.getModeName() != null)
+			algName += " (" + ccCurrent.getModeName() + ")";
+	}
+	
+	// Set the variant of the current algorithm
+	public void setAlgorithmMode(int mode){
+		ccCurrent.setMode(mode);
+		
+		for(int i = 0; i < checkers.length; i++)
+			if(checkers[i] == ccCurrent)
+				setAlgorithm(i);
+	}
+	
+	private void updateInputs(){
+		
+		// Zoom
+		int mouseScroll = InputListener.getMouseScroll();
+
+		if(mouseScroll < 0)			zoom *= Math.pow(ZOOM_FACTOR, -mouseScroll);
+		else if(mouseScroll > 0)	zoom /= Math.pow(ZOOM_FACTOR, mouseScroll);
+		
+		// Constrain zoom
+		if(zoom >= ZOOM_MAX)	zoom = ZOOM_MAX;
+		if(zoom <= ZOOM_MIN)	zoom = ZOOM_MIN;
+		
+		
+		// Update mouse position, keeping old position
+		int mxPrev = mx;
+		int myPrev = my;
+		
+		mx = InputListener.getMouseX();
+		my = InputListener.getMouseY();
+		
+		// Camera dragging
+		if(InputListener.isMouseDown()){
+			camX += (mxPrev - mx) / zoom;
+			camY += (myPrev - my) / zoom;
+			
+			// Constrain to region boundary
+			if(camX < -regionSizeX / 2f)	camX = -regionSizeX / 2f;
+			if(camX > regionSizeX / 2f)		camX = regionSizeX / 2f;
+			if(camY < -regionSizeY / 2f)	camY = -regionSizeY / 2f;
+			if(camY > regionSizeY / 2f)		camY = regionSizeY / 2f;
+		}
+		
+		
+		// Set algorithm
+		int algorithmKey = InputListener.getAlgorithmKey();
+		
+		if(algorithmKey >= 0 && algorithmKey < checkers.length)
+			setAlgorithm(algorithmKey);
+		
+		// Add / remove colliders
+		if(InputListener.isKeyTyped(0)){
+			
+			if(!COLLIDER_INC_USE_MULT)
+				addColliders(COLLIDER_INCREMENT_COUNT);
+			else
+				addColliders((colliders.size() * COLLIDER_INCREMENT_MULT) - colliders.size());
+			
+			//regionSizeX += REGION_SIZE_INC;
+			//regionSizeY += REGION_SIZE_INC;
+		}
+		else if(InputListener.isKeyTyped(1)){
+			
+			if(!COLLIDER_INC_USE_MULT)
+				removeColliders(COLLIDER_INCREMENT_COUNT);
+			else
+				removeColliders(colliders.size() - (colliders.size() / COLLIDER_INCREMENT_MULT));
+			
+			//regionSizeX -= REGION_SIZE_INC;
+			//regionSizeY -= REGION_SIZE_INC;
+			
+			// Minimum count
+			if(colliders.size() < COLLIDER_MIN_COUNT)
+				addColliders(COLLIDER_MIN_COUNT - colliders.size());
+		}
+		
+		// Cycle algorithm variants
+		if(InputListener.isKeyTyped(4))
+			setAlgorithmMode((ccCurrent.getMode() + 1) % ccCurrent.getModeCount());
+		
+		if(InputListener.isKeyTyped(2))
+			debugDraw = !debugDraw;
+		
+		if(InputListener.isKeyTyped(3)){
+			colorMode++;
+			
+			if(colorMode > 1)
+				colorMode = 0;
+		}
+		
+		// Toggle parallel collision resolution
+		if(InputListener.isKeyTyped(6))
+			parallelResolve = !parallelResolve;
+		
+		// Toggle mixed sizes and respawn all colliders
+		if(InputListener.isKeyTyped(5)){
+			mixedSizes = !mixedSizes;
+			
+			int count = colliders.size();
+			removeColliders(count);
+			addColliders(count);
+		}
+	}
+	
+	private void updateColliders(){
+		
+		// Update all collider positions
+		colliders.update();
+		
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		float[] velX = colliders.velX;
+		float[] velY = colliders.velY;
+		
+		// Check boundary collision and set velocity to 'bounce' object off boundary
+		for(int i = 0; i < colliders.size(); i++){
+			if(lowerBoundX[i] < -regionSizeX / 2f || upperBoundX[i] > regionSizeX / 2f)
+				velX[i] = -velX[i];
+			
+			if(lowerBoundY[i] < -regionSizeY / 2f || upperBoundY[i] > regionSizeY / 2f)
+				velY[i] = -velY[i];
+		}
+		
+		// Check collisions using selected collision checker
+		long timeBefore = System.nanoTime();
+		
+		// Refit the BVH to the moved colliders first
+		if(ccCurrent == ccBoundingVolumeHierarchy)
+			ccBoundingVolumeHierarchy.update();
+		
+		pairs.clear();
+		ccCurrent.checkCollisions(pairs);
+		
+		// Calculate collision check time
+		updateTimeNs = System.nanoTime() - timeBefore;
+		collisionCount = pairs.size();
+		
+		
+		timeBefore = System.nanoTime();
+		
+		contacts.update(pairs);
+		
+		// Resolve collisions using a basic elastic collision formula
+		// Not strictly necessary since we only care about the collision detection itself but
+		// it makes it much more fun
+		if(parallelResolve)
+			batchResolver.run(pairs, colliders.size(), resolveJob);
+		else{
+			for(int i = 0; i < pairs.size(); i++)
+				resolvePair(i);
+		}
+		
+		resolveTimeNs = System.nanoTime() - timeBefore;
+	}
+	
+	// Only changes the two colliders of the pair, so pairs without a shared collider can be resolved in parallel
+	private void resolvePair(int i){
+		int c1 = pairs.getA(i);
+		int c2 = pairs.getB(i);
+		
+		// Move colliders back to their first contact within this step so fast ones bounce instead of passing through
+		// Pairs already touching at the start of the step are only separated, rewinding them would pin them in place
+		if(ccCurrent == ccContinuous){
+			float time = ccContinuous.getTimeOfImpact(i);
+			
+			if(time > 0 && !contacts.isPersisting(i)){
+				rewindCollider(c1, time);
+				rewindCollider(c2, time);
+			}
+		}
+		
+		// Contacts from the last frame that are still approaching along their cached normal bounce again,
+		// the others already bounced and are only pushed apart
+		if(contacts.isPersisting(i) && !isClosing(c1, c2, contacts.getNormalX(i), contacts.getNormalY(i)))
+			separateColliders(c1, c2, contacts.getNormalX(i), contacts.getNormalY(i));
+		else
+			resolveCollision(i, c1, c2);
+	}
+	
+	// True if c2 moves towards c1 along the normal from c1 to c2
+	private boolean isClosing(int c1, int c2, float normalX, float normalY){
+		float[] velX = colliders.velX;
+		float[] velY = colliders.velY;
+		
+		return (velX[c2] - velX[c1]) * normalX + (velY[c2] - velY[c1]) * normalY < 0;
+	}
+	
+	// Move a collider back to a fraction of its last step, unless it was already resolved this step
+	private void rewindCollider(int c, float time){
+		
+		if(colliders.collided[c])
+			return;
+		
+		colliders.x[c] = colliders.prevX[c] + (colliders.x[c] - colliders.prevX[c]) * time;
+		colliders.y[c] = colliders.prevY[c] + (colliders.y[c] - colliders.prevY[c]) * time;
+		colliders.updateAABB(c);
+	}
+	
+	private void resolveCollision(int pair, int c1, int c2){
+		
+		float[] x = colliders.x;
+		float[] y = colliders.y;
+		float[] velX = colliders.velX;
+		float[] velY = colliders.velY;
+		
+		colliders.collided[c1] = true;
+		colliders.collided[c2] = true;
+		
+		// Collider velocities
+		float vx1 = velX[c1];
+		float vy1 = velY[c1];
+		float vx2 = velX[c2];
+		float vy2 = velY[c2];
+		
+		// Collider velocity magnitudes
+		float v1 = (float)Math.hypot(vx1, vy1);
+		float v2 = (float)Math.hypot(vx2, vy2);
+		
+		// Collider directions
+		float dir1 = (float)Math.atan2(vy1, vx1);
+		float dir2 = (float)Math.atan2(vy2, vx2);
+		
+		// Angle between colliders
+		float ang = (float)Math.atan2(y[c2] - y[c1], x[c2] - x[c1]);
+		
+		// Set new velocities
+		velX[c1] = (float)(v2 * Math.cos(dir2 - ang) * Math.cos(ang) + v1 * Math.sin(dir1 - ang) * Math.sin(ang));
+		velY[c1] = (float)(v2 * Math.cos(dir2 - ang) * Math.sin(ang) + v1 * Math.sin(dir1 - ang) * Math.cos(ang));
+		
+		velX[c2] = (float)(v1 * Math.cos(dir1 - ang) * Math.cos(ang) + v2 * Math.sin(dir2 - ang) * Math.sin(ang));
+		velY[c2] = (float)(v1 * Math.cos(dir1 - ang) * Math.sin(ang) + v2 * Math.sin(dir2 - ang) * Math.cos(ang));
+		
+		// Force conservation of momentum with slight damping
+		float m = 0.98f * (float)((v1 + v2) / (Math.hypot(velX[c1], velY[c1]) + Math.hypot(velX[c2], velY[c2])));
+		velX[c1] *= m;
+		velY[c1] *= m;
+		velX[c2] *= m;
+		velY[c2] *= m;
+		
+		// Cache the direction between the colliders for the following frames of the contact
+		float normalX = (float)Math.cos(ang);
+		float normalY = (float)Math.sin(ang);
+		contacts.setNormal(pair, normalX, normalY);
+		
+		separateColliders(c1, c2, normalX, normalY);
+	}
+	
+	// Extra force to push stuck objects away from each other along the direction from c1 to c2
+	private void separateColliders(int c1, int c2, float normalX, float normalY){
+		
+		float[] velX = colliders.velX;
+		float[] velY = colliders.velY;
+		
+		colliders.collided[c1] = true;
+		colliders.collided[c2] = true;
+		
+		final float efm = 0.25f;
+		velX[c1] -= efm * normalX;
+		velY[c1] -= efm * normalY;
+		velX[c2] += efm * normalX;
+		velY[c2] += efm * normalY;
+	}
+	
+	private void addColliders(int num){
+		int first = colliders.size();
+		
+		for(int i = 0; i < num; i++){
+			
+			// Log-uniform sizes, so small colliders are common and large ones rare
+			float size = COLLIDER_SIZE;
+			
+			if(mixedSizes)
+				size = COLLIDER_SIZE_MIN * (float)Math.pow(COLLIDER_SIZE_MAX / COLLIDER_SIZE_MIN, random.nextFloat());
+			
+			// Get random position, adjusting for collider size
+			float x = (random.nextFloat() * (regionSizeX - size * 2)) - regionSizeX / 2f + size;
+			float y = (random.nextFloat() * (regionSizeY - size * 2)) - regionSizeY / 2f + size;
+			
+			// Get random velocity and direction
+			float vel = (random.nextFloat() * (COLLIDER_VEL_MAX - COLLIDER_VEL_MIN)) + COLLIDER_VEL_MIN;
+			float dir = random.nextFloat() * 2 * (float)Math.PI;
+			
+			// Add collider
+			colliders.add(x, y, size, vel * (float)Math.cos(dir), vel * (float)Math.sin(dir));
+		}
+		
+		// Bulk load into the BVH
+		ccBoundingVolumeHierarchy.addAll(first, num);
+		ccBoundingVolumeHierarchy.update();
+	}
+	
+	private void removeColliders(int num){
+		
+		num = Math.min(num, colliders.size());
+		
+		// Remove the BVH leaves in one pass while the ids are still in the store
+		ccBoundingVolumeHierarchy.removeLast(num);
+		
+		for(int i = 0; i < num; i++)
+			colliders.remove(colliders.get(colliders.size() - 1));
+		
+		ccBoundingVolumeHierarchy.update();
+	}
+	
+	public void draw(Graphics2D g, int winWidth, int winHeight){
+		
+		// Note: Drawing with BufferStrategy offsets the drawing positions, so the top left corner is at (8, 31) rather than (0, 0)
+		// This behavior may not be platform-independent
+		
+		// Window half width / half height for camera space conversion
+		winHw = winWidth / 2;
+		winHh = winHeight / 2;
+		
+		// Fill background
+		g.setColor(Color.BLACK);
+		g.fillRect(DRAW_OFFSET_X, DRAW_OFFSET_Y, winWidth, winHeight);
+		
+		// Draw colliders
+		
+		for(int i = 0; i < colliders.size(); i++){
+			
+			Collider c = colliders.get(i);
+			
+			switch(colorMode){
+			case 0:
+				g.setColor(c.collided() ? Color.YELLOW : Color.RED);
+				break;
+			
+			case 1:
+				// Rainbow uwu
+				g.setColor(c.collided() ? Color.WHITE : Color.getHSBColor((float)(rTime / 1000f + Math.atan2(c.getY(), c.getX()) / Math.PI), 1, 1));
+				break;
+			}
+			
+			// Get zoomed size and set to 1 if <1 so colliders will always be visible 
+			int size = (int)(c.getSize() * zoom);
+			size = size == 0 ? 1 : size;
+			
+			g.fillRect(toCameraSpaceX(c.getX()) - (size / 2), toCameraSpaceY(c.getY()) - (size / 2), size, size);
+		}
+		
+		
+		// Debug draw
+		if(debugDraw){
+			if(ccCurrent == ccSweepAndPrune){
+				
+				// Draw intervals on the sweep axis, x along the bottom edge and y along the right edge
+				final int size = 100;
+				g.setColor(Color.BLUE);
+				
+				if(ccSweepAndPrune.getSweepAxis() == CCSweepAndPrune.AXIS_X){
+					for(int i = 0; i < ccSweepAndPrune.getIntervalCount(); i++)
+						g.fillRect(toCameraSpaceX(ccSweepAndPrune.getInterval(i)), toCameraSpaceY(regionSizeY / 2f), 1, size);
+				}
+				else{
+					for(int i = 0; i < ccSweepAndPrune.getIntervalCount(); i++)
+						g.fillRect(toCameraSpaceX(regionSizeX / 2f), toCameraSpaceY(ccSweepAndPrune.getInterval(i)), size, 1);
+				}
+			}
+			else if(ccCurrent == ccBoundingVolumeHierarchy){
+				int root = ccBoundingVolumeHierarchy.getRoot();
+				
+				if(root != CCBoundingVolumeHierarchy.NULL_NODE)
+					drawBVHTree(g, root, new AABB());
+			}
+			else if(ccCurrent == ccLooseQuadtree)
+				drawQuadtree(g, ccLooseQuadtree.getRoot(), new AABB());
+			else if(ccCurrent == ccHierarchicalGrid){
+				AABB aabb = new AABB();
+				g.setColor(Color.BLUE);
+				
+				// Occupied cells of every level
+				for(int i = 0; i < ccHierarchicalGrid.getCellCount(); i++){
+					ccHierarchicalGrid.getCellAABB(i, aabb);
+					g.drawRect(toCameraSpaceX(aabb.lowerBoundX), toCameraSpaceY(aabb.lowerBoundY),
+							Math.max((int)((aabb.upperBoundX - aabb.lowerBoundX) * zoom), 1), Math.max((int)((aabb.upperBoundY - aabb.lowerBoundY) * zoom), 1));
+				}
+			}
+		}
+		
+
+		// Draw region boundary
+		g.setColor(Color.GRAY);
+		g.drawRect(toCameraSpaceX(-regionSizeX / 2f), toCameraSpaceY(-regionSizeY / 2f), (int)(regionSizeX * zoom), (int)(regionSizeY * zoom));
+		
+		
+		// Draw info
+		g.setColor(Color.WHITE);
+		g.drawString("FPS: " + (frameTime == 0 ? "" : (String.format("%.2f", 1000000000d / frameTime))), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 15);
+		g.drawString("Colliders: " + colliders.size(), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 35);
+		g.drawString("Algorithm: " + algName, DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 55);
+		g.drawString("Collision update time (ms): " + String.format("%.2f", updateTimeNs / 1000000f), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 75);
+		g.drawString("Collision resolve time (ms): " + String.format("%.2f", resolveTimeNs / 1000000f) +
+				(parallelResolve ? " (" + batchResolver.getBatchCount() + " parallel batches)" : ""), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 95);
+		
+		// Tree quality
+		if(ccCurrent == ccBoundingVolumeHierarchy)
+			g.drawString("Tree height: " + ccBoundingVolumeHierarchy.getHeight() + ", SAH cost: " + String.format("%.1f", ccBoundingVolumeHierarchy.getSAHCost()), DRAW_OFFSET_X + 10, DRAW_OFFSET_Y + 115);
+		
+		rTime++;
+		
+	}
+	
+	private int toCameraSpaceX(float x){
+		return DRAW_OFFSET_X + winHw + (int)((x - camX) * zoom);
+	}
+	
+	private int toCameraSpaceY(float y){
+		return DRAW_OFFSET_X + winHh + (int)((y - camY) * zoom);
+	}
+	
+	private void drawBVHTree(Graphics2D g, int node, AABB aabb){
+		
+		// Leaf nodes store the margin AABB
+		boolean leaf = ccBoundingVolumeHierarchy.isLeaf(node);
+		ccBoundingVolumeHierarchy.getAABB(node, aabb);
+		g.setColor(leaf ? Color.ORANGE : Color.BLUE);
+		
+		// Get sizes
+		int sizeX = (int)((aabb.upperBoundX - aabb.lowerBoundX) * zoom);
+		int sizeY = (int)((aabb.upperBoundY - aabb.lowerBoundY) * zoom);
+		sizeX = sizeX == 0 ? 1 : sizeX;
+		sizeY = sizeY == 0 ? 1 : sizeY;
+		
+		// Draw
+		g.drawRect(toCameraSpaceX(aabb.lowerBoundX), toCameraSpaceY(aabb.lowerBoundY), sizeX, sizeY);
+		
+		
+		// Draw children
+		if(!leaf){
+			drawBVHTree(g, ccBoundingVolumeHierarchy.getLeft(node), aabb);
+			drawBVHTree(g, ccBoundingVolumeHierarchy.getRight(node), aabb);
+		}
+	}
+	
+	private void drawQuadtree(Graphics2D g, int node, AABB aabb){
+		
+		// Only nodes holding colliders are drawn
+		if(node == CCLooseQuadtree.NULL_NODE || ccLooseQuadtree.getSubtreeCount(node) == 0)
+			return;
+		
+		// Cell, the loose bounds extend half a cell further
+		ccLooseQuadtree.getCellAABB(node, false, aabb);
+		g.setColor(Color.BLUE);
+		g.drawRect(toCameraSpaceX(aabb.lowerBoundX), toCameraSpaceY(aabb.lowerBoundY),
+				Math.max((int)((aabb.upperBoundX - aabb.lowerBoundX) * zoom), 1), Math.max((int)((aabb.upperBoundY - aabb.lowerBoundY) * zoom), 1));
+		
+		// Draw children
+		for(int i = 0; i < 4; i++)
+			drawQuadtree(g, ccLooseQuadtree.getChild(node, i), aabb);
+	}
+	
+	// Must be set before init() to apply to the initial colliders
+	public void setMixedSizes(boolean mixedSizes){
+		this.mixedSizes = mixedSizes;
+	}
+	
+	public boolean isMixedSizes(){
+		return mixedSizes;
+	}
+	
+	public void setFrameTime(long frameTime){
+		this.frameTime = frameTime;
+	}
+	
+	public long getUpdateTimeNs(){
+		return updateTimeNs;
+	}
+	
+	public long getResolveTimeNs(){
+		return resolveTimeNs;
+	}
+	
+	public void setParallelResolve(boolean parallelResolve){
+		this.parallelResolve = parallelResolve;
+	}
+	
+	public int getCollisionCount(){
+		return collisionCount;
+	}
+	
+	public ColliderStore getColliders(){
+		return colliders;
+	}
+	
+	public int getAlgorithmCount(){
+		return ALG_NAMES.length;
+	}
+	
+	public String getAlgorithmName(int i){
+		return ALG_NAMES[i];
+	}
+	
+	public int getAlgorithmModeCount(int i){
+		return checkers[i].getModeCount();
+	}
+	
+	// Name of the current algorithm including its variant
+	public String getCurrentAlgorithmName(){
+		return algName;
+	}
+}
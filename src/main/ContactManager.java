@@ -0,0 +1,309 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * ContactManager.java
+ *
+ * Keeps contacts between frames, between the broadphase and collision resolution. Each update takes the pairs found
+ * this frame and reports which contacts began, which persisted from the last frame and which ended, so resolution can
+ * skip or warm-start persisting contacts with their cached data.
+ *
+ * Contacts are found by pair key in an open-addressing hash table with linear probing and backward-shift deletion,
+ * as in PairSet, mapping to contact slots with a free list. A contact's data stays in its slot while it persists.
+ * Its frame stamp marks the last frame it was seen, and contacts not seen in an update have ended.
+ *
+ * Contacts are keyed by collider id, so they are all dropped, without ended events, when colliders are added or
+ * removed and ids may have moved.
+ *
+ * @author Daniel
+ *
+ */
+public class ContactManager{
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private static final long EMPTY = -1;
+	
+	private final ColliderStore colliders;
+	
+	// Hash table of pair keys and their contact slot
+	private long[] keys;
+	private int[] values;
+	
+	// Contact data by slot, the key's first collider is the one with the smaller id
+	private long[] contactKey;
+	private int[] contactStamp;
+	private int[] contactFirstFrame;
+	private float[] contactNormalX, contactNormalY;
+	
+	// Free contact slots, and the number of slots ever used
+	private int[] freeSlots;
+	private int freeCount;
+	private int slotCount;
+	
+	private int contactCount;
+	
+	// Contact slot of each pair in the last update, and whether the pair has its larger id first
+	private int[] pairContacts;
+	private boolean[] pairFlipped;
+	private int pairCount;
+	
+	private final PairBuffer began;
+	private final PairBuffer ended;
+	
+	private int frame;
+	
+	// Store modCount when the contacts were last updated
+	private int updatedModCount;
+	
+	
+	public ContactManager(ColliderStore colliders){
+		this.colliders = colliders;
+		
+		keys = new long[DEFAULT_CAPACITY * 2];
+		values = new int[DEFAULT_CAPACITY * 2];
+		Arrays.fill(keys, EMPTY);
+		
+		contactKey = new long[DEFAULT_CAPACITY];
+		contactStamp = new int[DEFAULT_CAPACITY];
+		contactFirstFrame = new int[DEFAULT_CAPACITY];
+		contactNormalX = new float[DEFAULT_CAPACITY];
+		contactNormalY = new float[DEFAULT_CAPACITY];
+		freeSlots = new int[DEFAULT_CAPACITY];
+		
+		pairContacts = new int[DEFAULT_CAPACITY];
+		pairFlipped = new boolean[DEFAULT_CAPACITY];
+		
+		began = new PairBuffer();
+		ended = new PairBuffer();
+		
+		updatedModCount = colliders.getModCount();
+	}
+	
+	// Match this frame's pairs with the existing contacts
+	public void update(PairBuffer pairs){
+		
+		frame++;
+		began.clear();
+		ended.clear();
+		
+		// Ids may have moved
+		if(updatedModCount != colliders.getModCount()){
+			clear();
+			updatedModCount = colliders.getModCount();
+		}
+		
+		pairCount = pairs.size();
+		
+		if(pairContacts.length < pairCount){
+			pairContacts = new int[Math.max(pairCount, pairContacts.length * 2)];
+			pairFlipped = new boolean[pairContacts.length];
+		}
+		
+		for(int i = 0; i < pairCount; i++){
+			long key = PairSet.key(pairs.getA(i), pairs.getB(i));
+			int contact = find(key);
+			
+			if(contact == -1){
+				contact = insert(key);
+				contactFirstFrame[contact] = frame;
+				began.add(pairs.getA(i), pairs.getB(i));
+			}
+			
+			contactStamp[contact] = frame;
+			pairContacts[i] = contact;
+			pairFlipped[i] = pairs.getA(i) > pairs.getB(i);
+		}
+		
+		// Contacts not seen this frame have ended
+		for(int contact = 0; contact < slotCount; contact++){
+			if(contactKey[contact] == EMPTY || contactStamp[contact] == frame)
+				continue;
+			
+			ended.add(PairSet.keyA(contactKey[contact]), PairSet.keyB(contactKey[contact]));
+			remove(contact);
+		}
+	}
+	
+	// Drop all contacts
+	public void clear(){
+		
+		if(contactCount == 0 && slotCount == 0)
+			return;
+		
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(contactKey, 0, slotCount, EMPTY);
+		
+		contactCount = 0;
+		slotCount = 0;
+		freeCount = 0;
+		pairCount = 0;
+	}
+	
+	// Contact slot of a key, -1 if there is no contact
+	private int find(long key){
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == key)
+				return values[slot];
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		return -1;
+	}
+	
+	// Add a contact for a key that has none and return its contact slot
+	private int insert(long key){
+		
+		// Keep load factor at or below 1/2
+		if((contactCount + 1) * 2 > keys.length)
+			rehash(keys.length * 2);
+		
+		int contact = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+		
+		if(contact == contactKey.length)
+			growContacts();
+		
+		contactKey[contact] = key;
+		contactNormalX[contact] = 0;
+		contactNormalY[contact] = 0;
+		contactCount++;
+		
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while(keys[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		
+		keys[slot] = key;
+		values[slot] = contact;
+		
+		return contact;
+	}
+	
+	// Remove a contact and free its slot
+	private void remove(int contact){
+		
+		long key = contactKey[contact];
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while(keys[slot] != key)
+			slot = (slot + 1) & mask;
+		
+		// Shift following keys back into the gap until one is already in place
+		int gap = slot;
+		slot = (slot + 1) & mask;
+		
+		while(keys[slot] != EMPTY){
+			int home = hash(keys[slot]) & mask;
+			
+			// Move the key if its home slot is not between the gap and its current slot
+			if(((slot - home) & mask) >= ((slot - gap) & mask)){
+				keys[gap] = keys[slot];
+				values[gap] = values[slot];
+				gap = slot;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[gap] = EMPTY;
+		
+		contactKey[contact] = EMPTY;
+		freeSlots[freeCount++] = contact;
+		contactCount--;
+	}
+	
+	private void rehash(int capacity){
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		
+		int mask = capacity - 1;
+		
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldKeys[i] == EMPTY)
+				continue;
+			
+			int slot = hash(oldKeys[i]) & mask;
+			
+			while(keys[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+	
+	private void growContacts(){
+		int capacity = contactKey.length * 2;
+		
+		contactKey = Arrays.copyOf(contactKey, capacity);
+		contactStamp = Arrays.copyOf(contactStamp, capacity);
+		contactFirstFrame = Arrays.copyOf(contactFirstFrame, capacity);
+		contactNormalX = Arrays.copyOf(contactNormalX, capacity);
+		contactNormalY = Arrays.copyOf(contactNormalY, capacity);
+		freeSlots = Arrays.copyOf(freeSlots, capacity);
+	}
+	
+	private static int hash(long key){
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+	
+	// True if pair i of the last update was also in contact the frame before
+	public boolean isPersisting(int i){
+		return contactFirstFrame[pairContacts[i]] != frame;
+	}
+	
+	// Number of consecutive frames pair i has been in contact, 1 for a new contact
+	public int getContactFrames(int i){
+		return frame - contactFirstFrame[pairContacts[i]] + 1;
+	}
+	
+	// Cached contact normal of pair i, pointing from its first collider to its second
+	// Stored relative to the smaller id, so it stays valid if the broadphase reports the pair the other way around
+	public float getNormalX(int i){
+		return pairFlipped[i] ? -contactNormalX[pairContacts[i]] : contactNormalX[pairContacts[i]];
+	}
+	
+	public float getNormalY(int i){
+		return pairFlipped[i] ? -contactNormalY[pairContacts[i]] : contactNormalY[pairContacts[i]];
+	}
+	
+	public void setNormal(int i, float normalX, float normalY){
+		int contact = pairContacts[i];
+		float sign = pairFlipped[i] ? -1 : 1;
+		
+		contactNormalX[contact] = normalX * sign;
+		contactNormalY[contact] = normalY * sign;
+	}
+	
+	// Contacts that began or ended in the last update
+	public PairBuffer getBeganPairs(){
+		return began;
+	}
+	
+	public PairBuffer getEndedPairs(){
+		return ended;
+	}
+	
+	// Number of contacts that persisted from the frame before in the last update
+	public int getPersistingCount(){
+		return pairCount - began.size();
+	}
+	
+	public int size(){
+		return contactCount;
+	}
+}
@@ -0,0 +1,55 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * IdBuffer.java
+ *
+ * Reusable, growable buffer of collider ids.
+ * Used as the allocation-free output of spatial queries.
+ *
+ * @author Daniel
+ *
+ */
+public class IdBuffer{
+	
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	private int[] ids;
+	
+	private int count;
+	
+	
+	public IdBuffer(){
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public IdBuffer(int capacity){
+		ids = new int[Math.max(capacity, 1)];
+	}
+	
+	public void add(int id){
+		
+		if(count == ids.length)
+			ids = Arrays.copyOf(ids, ids.length * 2);
+		
+		ids[count++] = id;
+	}
+	
+	public int get(int i){
+		return ids[i];
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	public boolean isEmpty(){
+		return count == 0;
+	}
+	
+	// Remove all ids, keeping the allocated capacity
+	public void clear(){
+		count = 0;
+	}
+}
@@ -1,15 +1,15 @@
-package main;
-
-/**
- * Main.java
- * 
- * Starts the rest of the program by instantiating a Window class.
- * 
- * @author Daniel
- *
- */
-public class Main{
-	public static void main(String[] args){
-		new Window();
-	}
-}
+package main;
+
+/**
+ * Main.java
+ * 
+ * Starts the rest of the program by instantiating a Window class.
+ * 
+ * @author Daniel
+ *
+ */
+public class Main{
+	public static void main(String[] args){
+		new Window();
+	}
+}
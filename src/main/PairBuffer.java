@@ -0,0 +1,72 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * PairBuffer.java
+ *
+ * Reusable, growable buffer of collider id pairs packed into a single int array.
+ * Used as the allocation-free output of CollisionChecker.checkCollisions(PairBuffer).
+ *
+ * @author Daniel
+ *
+ */
+public class PairBuffer{
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	// Pair i is stored at 2i and 2i + 1
+	private int[] pairs;
+	
+	private int count;
+	
+	
+	public PairBuffer(){
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public PairBuffer(int capacity){
+		pairs = new int[Math.max(capacity, 1) * 2];
+	}
+	
+	public void add(int a, int b){
+		
+		if(count * 2 == pairs.length)
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
+		
+		pairs[count * 2] = a;
+		pairs[count * 2 + 1] = b;
+		count++;
+	}
+	
+	// Append all pairs of another buffer
+	public void addAll(PairBuffer other){
+		
+		if((count + other.count) * 2 > pairs.length)
+			pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, (count + other.count) * 2));
+		
+		System.arraycopy(other.pairs, 0, pairs, count * 2, other.count * 2);
+		count += other.count;
+	}
+	
+	public int getA(int i){
+		return pairs[i * 2];
+	}
+	
+	public int getB(int i){
+		return pairs[i * 2 + 1];
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	public boolean isEmpty(){
+		return count == 0;
+	}
+	
+	// Remove all pairs, keeping the allocated capacity
+	public void clear(){
+		count = 0;
+	}
+}
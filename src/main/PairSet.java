@@ -0,0 +1,177 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * PairSet.java
+ *
+ * Set of unordered collider id pairs stored as packed long keys in an open-addressing hash table.
+ * Uses linear probing with backward-shift deletion, so no tombstones build up when pairs come and go.
+ *
+ * @author Daniel
+ *
+ */
+public class PairSet{
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private static final long EMPTY = -1;
+	
+	private long[] keys;
+	private int count;
+	
+	
+	public PairSet(){
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public PairSet(int capacity){
+		keys = new long[Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1];
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	// Pack an unordered pair of ids, smaller id in the high bits
+	public static long key(int a, int b){
+		return a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+	}
+	
+	public static int keyA(long key){
+		return (int)(key >>> 32);
+	}
+	
+	public static int keyB(long key){
+		return (int)key;
+	}
+	
+	// Returns false if the pair was already in the set
+	public boolean add(int a, int b){
+		return add(key(a, b));
+	}
+	
+	public boolean add(long key){
+		
+		// Keep load factor at or below 1/2
+		if((count + 1) * 2 > keys.length)
+			rehash(keys.length * 2);
+		
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == key)
+				return false;
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] = key;
+		count++;
+		return true;
+	}
+	
+	// Returns false if the pair was not in the set
+	public boolean remove(int a, int b){
+		return remove(key(a, b));
+	}
+	
+	public boolean remove(long key){
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while(keys[slot] != key){
+			if(keys[slot] == EMPTY)
+				return false;
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		// Shift following keys back into the gap until one is already in place
+		int gap = slot;
+		slot = (slot + 1) & mask;
+		
+		while(keys[slot] != EMPTY){
+			int home = hash(keys[slot]) & mask;
+			
+			// Move the key if its home slot is not between the gap and its current slot
+			if(((slot - home) & mask) >= ((slot - gap) & mask)){
+				keys[gap] = keys[slot];
+				gap = slot;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[gap] = EMPTY;
+		count--;
+		return true;
+	}
+	
+	public boolean contains(int a, int b){
+		return contains(key(a, b));
+	}
+	
+	public boolean contains(long key){
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while(keys[slot] != EMPTY){
+			if(keys[slot] == key)
+				return true;
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		return false;
+	}
+	
+	// Append all pairs to a buffer, in table order
+	public void toPairBuffer(PairBuffer pairs){
+		for(int i = 0; i < keys.length; i++)
+			if(keys[i] != EMPTY)
+				pairs.add(keyA(keys[i]), keyB(keys[i]));
+	}
+	
+	// Number of slots, for iterating with getKey()
+	public int getCapacity(){
+		return keys.length;
+	}
+	
+	// Key in a slot, or -1 if the slot is empty
+	public long getKey(int slot){
+		return keys[slot];
+	}
+	
+	public int size(){
+		return count;
+	}
+	
+	public boolean isEmpty(){
+		return count == 0;
+	}
+	
+	public void clear(){
+		if(count > 0){
+			Arrays.fill(keys, EMPTY);
+			count = 0;
+		}
+	}
+	
+	private void rehash(int capacity){
+		long[] old = keys;
+		
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		count = 0;
+		
+		for(long key : old)
+			if(key != EMPTY)
+				add(key);
+	}
+	
+	private static int hash(long key){
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+}
@@ -0,0 +1,128 @@
+package main;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelPairKernel.java
+ * 
+ * Runs pair tests on a ForkJoinPool. Work items are split into contiguous chunks, each chunk writes to its
+ * own reusable PairBuffer, and the buffers are merged in chunk order, so the output order does not depend
+ * on thread scheduling.
+ * 
+ * @author Daniel
+ *
+ */
+public class ParallelPairKernel{
+	
+	// Chunks per pool thread, so threads that finish early can steal remaining work
+	private static final int CHUNKS_PER_THREAD = 8;
+	
+	// Work done for a range of items, adding found pairs to the chunk's buffer
+	public interface Job{
+		void run(int start, int end, PairBuffer pairs);
+	}
+	
+	private final ForkJoinPool pool;
+	
+	// Output buffer of each chunk, kept between runs
+	private PairBuffer[] chunkPairs;
+	
+	
+	public ParallelPairKernel(){
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public ParallelPairKernel(ForkJoinPool pool){
+		this.pool = pool;
+		chunkPairs = new PairBuffer[0];
+	}
+	
+	// Run a job over items 0 to count - 1 and append the found pairs to the output
+	public void run(int count, Job job, PairBuffer pairs){
+		
+		if(count == 0)
+			return;
+		
+		int chunks = Math.min(count, pool.getParallelism() * CHUNKS_PER_THREAD);
+		
+		if(chunkPairs.length < chunks){
+			PairBuffer[] buffers = new PairBuffer[chunks];
+			
+			for(int i = 0; i < chunks; i++)
+				buffers[i] = i < chunkPairs.length ? chunkPairs[i] : new PairBuffer();
+			
+			chunkPairs = buffers;
+		}
+		
+		pool.invoke(new ChunkTask(job, count, chunks, 0, chunks));
+		
+		for(int i = 0; i < chunks; i++)
+			pairs.addAll(chunkPairs[i]);
+	}
+	
+	// Threads the work is spread over
+	public int getParallelism(){
+		return pool.getParallelism();
+	}
+	
+	// Test all pairs between colliders [startA, endA) and [startB, endB)
+	// If the ranges start at the same id, only pairs with the first id lower are tested
+	public static void testTile(ColliderStore colliders, int startA, int endA, int startB, int endB, PairBuffer pairs){
+		
+		float[] lowerBoundX = colliders.lowerBoundX;
+		float[] lowerBoundY = colliders.lowerBoundY;
+		float[] upperBoundX = colliders.upperBoundX;
+		float[] upperBoundY = colliders.upperBoundY;
+		
+		boolean diagonal = startA == startB;
+		
+		for(int i = startA; i < endA; i++){
+			float lx = lowerBoundX[i];
+			float ly = lowerBoundY[i];
+			float ux = upperBoundX[i];
+			float uy = upperBoundY[i];
+			
+			for(int j = diagonal ? i + 1 : startB; j < endB; j++){
+				
+				if(	lx > upperBoundX[j] || ly > upperBoundY[j] ||
+					lowerBoundX[j] > ux || lowerBoundY[j] > uy)
+					continue;
+				
+				pairs.add(i, j);
+			}
+		}
+	}
+	
+	// Splits a range of chunks in half until a single chunk is left
+	private class ChunkTask extends RecursiveAction{
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final Job job;
+		private final int count, chunks;
+		private final int first, last;
+		
+		ChunkTask(Job job, int count, int chunks, int first, int last){
+			this.job = job;
+			this.count = count;
+			this.chunks = chunks;
+			this.first = first;
+			this.last = last;
+		}
+		
+		protected void compute(){
+			
+			if(last - first > 1){
+				int mid = (first + last) >>> 1;
+				invokeAll(new ChunkTask(job, count, chunks, first, mid), new ChunkTask(job, count, chunks, mid, last));
+				return;
+			}
+			
+			PairBuffer pairs = chunkPairs[first];
+			pairs.clear();
+			
+			job.run((int)((long)count * first / chunks), (int)((long)count * (first + 1) / chunks), pairs);
+		}
+	}
+}